@@ -0,0 +1,55 @@
+package rule_engine.rule_engine.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleParser;
+import rule_engine.rule_engine.utils.ASTConverter;
+
+import java.util.concurrent.TimeUnit;
+
+// What loading and saving a rule costs in the AST column: the binary format next to the old JSON one
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ASTConverterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int conditions;
+
+    final ASTConverter converter = new ASTConverter();
+    final ObjectMapper objectMapper = new ObjectMapper();
+    Node ast;
+    byte[] binary;
+    String json;
+
+    @Setup
+    public void setup() throws Exception {
+        ast = RuleParser.parseExpression(new RuleGenerator(42).flatRule(conditions));
+        binary = converter.convertToDatabaseColumn(ast);
+        json = objectMapper.writeValueAsString(ast);
+    }
+
+    @Benchmark
+    public byte[] write() {
+        return converter.convertToDatabaseColumn(ast);
+    }
+
+    @Benchmark
+    public Node read() {
+        return converter.convertToEntityAttribute(binary);
+    }
+
+    @Benchmark
+    public Node roundTrip() {
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(ast));
+    }
+
+    @Benchmark
+    public Node readLegacyJson() {
+        return ASTConverter.fromJson(json);
+    }
+}
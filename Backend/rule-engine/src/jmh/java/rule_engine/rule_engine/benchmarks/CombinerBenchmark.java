@@ -0,0 +1,38 @@
+package rule_engine.rule_engine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleCombiner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CombinerBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    int rules;
+
+    List<String> input;
+
+    @Setup
+    public void setup() {
+        input = new RuleGenerator(42).combinableRules(rules);
+    }
+
+    @Benchmark
+    public Node combine() {
+        return RuleCombiner.combine(input);
+    }
+
+    // What the combine endpoint stores as the rule string
+    @Benchmark
+    public String combineToString() {
+        return RuleCombiner.combineRules(input);
+    }
+}
@@ -0,0 +1,64 @@
+package rule_engine.rule_engine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.CompiledRule;
+import rule_engine.rule_engine.parsers.EvaluationContext;
+import rule_engine.rule_engine.parsers.RuleCompiler;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Tree interpreter vs the compiled graph on the same rule and records.
+// compiled goes from the Map record (converting the attributes it reaches), preconverted from a context
+// whose slots were already converted on an earlier pass.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvaluateBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    // shallow: 8 conditions side by side; deep: brackets nested 64 levels
+    @Param({"shallow", "deep"})
+    String shape;
+
+    Node ast;
+    CompiledRule compiled;
+    Map<String, Object>[] records;
+    EvaluationContext[] contexts;
+    int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        RuleGenerator generator = new RuleGenerator(42);
+        ast = RuleParser.parseExpression("shallow".equals(shape) ? generator.flatRule(8) : generator.deepRule(64));
+        compiled = RuleCompiler.compile(ast);
+        records = new Map[RECORDS];
+        contexts = new EvaluationContext[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = generator.record();
+            contexts[i] = new EvaluationContext().load(records[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean interpreted() {
+        return RuleParser.evaluate(ast, records[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.evaluate(records[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public boolean preconverted() {
+        return compiled.evaluate(contexts[next++ & (RECORDS - 1)]);
+    }
+}
@@ -0,0 +1,71 @@
+package rule_engine.rule_engine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rule_engine.rule_engine.parsers.CompiledRule;
+import rule_engine.rule_engine.parsers.RuleCompiler;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+// x = v1 OR x = v2 OR ... compiled as written vs the same values as one x IN (...).
+// Half the records hit the set, so the chain walks on average well over half its length.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MembershipBenchmark {
+
+    private static final int RECORDS = 1024;
+
+    @Param({"string", "numeric"})
+    String kind;
+
+    @Param({"4", "16", "64"})
+    int values;
+
+    CompiledRule chain;
+    CompiledRule set;
+    Map<String, Object>[] records;
+    int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        boolean numeric = "numeric".equals(kind);
+        String variable = numeric ? "salary" : "department";
+        StringJoiner or = new StringJoiner(" OR ");
+        StringJoiner list = new StringJoiner(", ", variable + " IN (", ")");
+        for (int v = 0; v < values; v++) {
+            String literal = numeric ? Integer.toString(v * 1000) : "'dept" + v + "'";
+            or.add(variable + " = " + literal);
+            list.add(literal);
+        }
+        chain = RuleCompiler.compile(RuleParser.parseExpression(or.toString()));
+        set = RuleCompiler.compile(RuleParser.parseExpression(list.toString()));
+
+        Random random = new Random(42);
+        records = new Map[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            int v = random.nextInt(values * 2);
+            Map<String, Object> record = new HashMap<>();
+            record.put(variable, numeric ? (Object) (v * 1000) : "dept" + v);
+            records[i] = record;
+        }
+    }
+
+    @Benchmark
+    public boolean equalityChain() {
+        return chain.evaluate(records[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public boolean membership() {
+        return set.evaluate(records[next++ & (RECORDS - 1)]);
+    }
+}
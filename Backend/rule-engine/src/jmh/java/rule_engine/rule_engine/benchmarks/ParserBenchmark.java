@@ -0,0 +1,31 @@
+package rule_engine.rule_engine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    int conditions;
+
+    String rule;
+
+    @Setup
+    public void setup() {
+        rule = new RuleGenerator(42).flatRule(conditions);
+    }
+
+    @Benchmark
+    public Node parse() {
+        return RuleParser.parseExpression(rule);
+    }
+}
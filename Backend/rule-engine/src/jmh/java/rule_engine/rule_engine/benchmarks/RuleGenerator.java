@@ -0,0 +1,79 @@
+package rule_engine.rule_engine.benchmarks;
+
+import java.util.*;
+
+// Synthetic rules and records for the benchmarks. Seeded, so every run (and every version we compare)
+// sees exactly the same inputs.
+public class RuleGenerator {
+
+    private static final String[] NUMERIC = {"age", "salary", "experience"};
+    private static final String[] NUMERIC_OPERATORS = {">", "<", ">=", "<=", "=", "!="};
+    private static final String[] DEPARTMENTS = {"Sales", "Marketing", "HR", "Engineering", "Finance"};
+
+    private final Random random;
+
+    public RuleGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // conditions joined by AND/OR, with a bracketed pair every so often - the shape our generated rules have
+    public String flatRule(int conditions) {
+        StringBuilder rule = new StringBuilder();
+        for (int c = 0; c < conditions; c++) {
+            if (c > 0) rule.append(random.nextBoolean() ? " AND " : " OR ");
+            if (c + 1 < conditions && random.nextInt(4) == 0) {
+                rule.append('(').append(condition()).append(" AND ").append(condition()).append(')');
+                c++;
+            } else {
+                rule.append(condition());
+            }
+        }
+        return rule.toString();
+    }
+
+    // Brackets nested depth levels deep: (a AND (b OR (c AND ...)))
+    public String deepRule(int depth) {
+        StringBuilder rule = new StringBuilder();
+        for (int d = 0; d < depth; d++) {
+            rule.append('(').append(condition()).append(d % 2 == 0 ? " AND " : " OR ");
+        }
+        rule.append(condition());
+        rule.append(")".repeat(depth));
+        return rule.toString();
+    }
+
+    // Bracketed two-condition rules the way the combine endpoint gets them
+    public List<String> combinableRules(int count) {
+        List<String> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rules.add("(" + condition() + " AND " + condition() + ")");
+        }
+        return rules;
+    }
+
+    public String condition() {
+        if (random.nextInt(3) == 0) {
+            return "department " + (random.nextBoolean() ? "=" : "!=") + " '" + DEPARTMENTS[random.nextInt(DEPARTMENTS.length)] + "'";
+        }
+        String attribute = NUMERIC[random.nextInt(NUMERIC.length)];
+        return attribute + " " + NUMERIC_OPERATORS[random.nextInt(NUMERIC_OPERATORS.length)] + " " + value(attribute);
+    }
+
+    // Every attribute the generated rules use, so evaluation never stops on a missing variable
+    public Map<String, Object> record() {
+        Map<String, Object> record = new HashMap<>();
+        for (String attribute : NUMERIC) record.put(attribute, value(attribute));
+        record.put("department", DEPARTMENTS[random.nextInt(DEPARTMENTS.length)]);
+        record.put("name", "Employee" + random.nextInt(1000));
+        record.put("email", "employee" + random.nextInt(1000) + "@example.com");
+        return record;
+    }
+
+    private int value(String attribute) {
+        switch (attribute) {
+            case "age": return 18 + random.nextInt(50);
+            case "salary": return 20000 + 1000 * random.nextInt(100);
+            default: return random.nextInt(30);
+        }
+    }
+}
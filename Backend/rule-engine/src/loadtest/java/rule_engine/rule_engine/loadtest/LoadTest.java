@@ -0,0 +1,293 @@
+package rule_engine.rule_engine.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import rule_engine.rule_engine.RuleEngineApplication;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+// Load test for the REST API: mvn -Ploadtest verify -Dloadtest.args="rules=1000 rates=200,400,800"
+//
+// Starts the application in this JVM on in-memory H2 (or uses url=... if one is already running), seeds
+// synthetic rules through /api/rules/create, then drives evaluate/{id}, all and combine at each rate in
+// turn, open loop (see OpenLoopDriver). Prints throughput and p50/p99/p99.9 per endpoint for every rate,
+// stops at the first rate the service can't sustain, and writes everything to target/loadtest-result.json
+// so runs from two versions can be compared.
+//
+// Arguments are key=value; anything starting with -- goes to the embedded application as is
+// (e.g. --rule-engine.bytecode.enabled=true).
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "url", "",
+            "rules", "1000",
+            "rates", "100,200,400,800,1600",
+            "warmup", "5",
+            "duration", "20",
+            "mix", "evaluate:90,combine:8,all:2",
+            "max-in-flight", "1000",
+            "seed", "42",
+            "out", "target/loadtest-result.json");
+
+    // The rate counts as sustained if we got at least this share of it through, with no drops
+    private static final double SUSTAINED = 0.95;
+    private static final double MAX_ERROR_RATE = 0.01;
+
+    private static final String[] NUMERIC = {"age", "salary", "experience"};
+    private static final String[] NUMERIC_OPERATORS = {">", "<", ">=", "<=", "=", "!="};
+    private static final String[] DEPARTMENTS = {"Sales", "Marketing", "HR", "Engineering", "Finance"};
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--rule-engine.store=jpa",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.main.banner-mode=off"));
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0 || !DEFAULTS.containsKey(arg.substring(0, eq))) {
+                throw new IllegalArgumentException("Unknown argument '" + arg + "', expected one of " + new TreeSet<>(DEFAULTS.keySet()));
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        ConfigurableApplicationContext app = null;
+        String baseUrl = options.get("url");
+        if (baseUrl.isEmpty()) {
+            System.out.println("Starting the application on in-memory H2...");
+            app = new SpringApplicationBuilder(RuleEngineApplication.class).run(appArgs.toArray(new String[0]));
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+        }
+
+        try {
+            run(baseUrl, options);
+        } finally {
+            if (app != null) app.close();
+        }
+        System.exit(0);
+    }
+
+    private static void run(String baseUrl, Map<String, String> options) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Random random = new Random(Long.parseLong(options.get("seed")));
+
+        List<Long> ids = seed(client, baseUrl, Integer.parseInt(options.get("rules")), random);
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 1024; i++) records.add(objectMapper.writeValueAsString(record(random)));
+
+        List<OpenLoopDriver.Endpoint> endpoints = new ArrayList<>();
+        for (String entry : options.get("mix").split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = Integer.parseInt(parts[1]);
+            switch (parts[0]) {
+                case "evaluate":
+                    endpoints.add(new OpenLoopDriver.Endpoint("evaluate/{id}", weight, () ->
+                            json(baseUrl + "/api/rules/evaluate/" + ids.get(random.nextInt(ids.size())),
+                                    records.get(random.nextInt(records.size())))));
+                    break;
+                case "all":
+                    endpoints.add(new OpenLoopDriver.Endpoint("all", weight, () ->
+                            HttpRequest.newBuilder(URI.create(baseUrl + "/api/rules/all")).timeout(Duration.ofSeconds(30)).GET().build()));
+                    break;
+                case "combine":
+                    // Every combine stores a new rule, so the rule set grows while this runs - as it would in use
+                    endpoints.add(new OpenLoopDriver.Endpoint("combine", weight, () -> {
+                        StringJoiner rules = new StringJoiner(",");
+                        for (int r = 2 + random.nextInt(3); r > 0; r--) rules.add("(" + condition(random) + " AND " + condition(random) + ")");
+                        return form(baseUrl + "/api/rules/combine", Map.of("ruleString", rules.toString()));
+                    }));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown endpoint '" + parts[0] + "' in mix, expected evaluate, all or combine");
+            }
+        }
+
+        OpenLoopDriver driver = new OpenLoopDriver(client, endpoints, Integer.parseInt(options.get("max-in-flight")));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int duration = Integer.parseInt(options.get("duration"));
+        List<Map<String, Object>> results = new ArrayList<>();
+        Double lastSustained = null;
+        Double saturatedAt = null;
+        for (String step : options.get("rates").split(",")) {
+            double rate = Double.parseDouble(step.trim());
+            System.out.printf("%nrate %.0f/s: %ds warm-up, %ds measured%n", rate, warmup, duration);
+            double elapsed = driver.run(rate, warmup, duration);
+            Map<String, Object> result = report(rate, elapsed, endpoints);
+            results.add(result);
+            if ((boolean) result.get("sustained")) {
+                lastSustained = rate;
+            } else {
+                saturatedAt = rate;
+                break;
+            }
+        }
+
+        if (saturatedAt == null) {
+            System.out.printf("%nEvery rate was sustained; add higher rates to find the saturation point%n");
+        } else {
+            System.out.printf("%nSaturated at %.0f/s (last sustained rate: %s)%n", saturatedAt,
+                    lastSustained == null ? "none" : String.format("%.0f/s", lastSustained));
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("rules", ids.size());
+        summary.put("mix", options.get("mix"));
+        summary.put("lastSustainedRate", lastSustained);
+        summary.put("saturatedAt", saturatedAt);
+        summary.put("steps", results);
+        File out = new File(options.get("out"));
+        if (out.getParentFile() != null) out.getParentFile().mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(out, summary);
+        System.out.println("Results written to " + out);
+    }
+
+    // Creates the rules through the API, 32 requests at a time, and returns their ids
+    private static List<Long> seed(HttpClient client, String baseUrl, int count, Random random) throws Exception {
+        System.out.printf("Seeding %d rules...%n", count);
+        long start = System.nanoTime();
+        Semaphore window = new Semaphore(32);
+        List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            window.acquire();
+            HttpRequest request = form(baseUrl + "/api/rules/create", Map.of("ruleString", rule(random), "description", "load test " + i));
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                window.release();
+                if (error != null) throw new IllegalStateException("Creating a rule failed", error);
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Creating a rule failed with " + response.statusCode() + ": " + response.body());
+                }
+                try {
+                    ids.add(objectMapper.readTree(response.body()).get("id").asLong());
+                } catch (Exception e) {
+                    throw new IllegalStateException("Unexpected create response: " + response.body(), e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        System.out.printf("Seeded %d rules in %.1fs%n", ids.size(), (System.nanoTime() - start) / 1e9);
+        List<Long> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static Map<String, Object> report(double rate, double elapsed, List<OpenLoopDriver.Endpoint> endpoints) {
+        System.out.printf("  %-14s %9s %7s %8s %10s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "dropped", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        long completed = 0, errors = 0, dropped = 0;
+        List<Map<String, Object>> perEndpoint = new ArrayList<>();
+        for (OpenLoopDriver.Endpoint endpoint : endpoints) {
+            long requests = endpoint.ok.sum() + endpoint.errors.sum();
+            completed += requests;
+            errors += endpoint.errors.sum();
+            dropped += endpoint.dropped.sum();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", endpoint.name);
+            row.put("requests", requests);
+            row.put("errors", endpoint.errors.sum());
+            row.put("dropped", endpoint.dropped.sum());
+            row.put("throughput", requests / elapsed);
+            row.put("p50Ms", millis(endpoint, 50));
+            row.put("p99Ms", millis(endpoint, 99));
+            row.put("p999Ms", millis(endpoint, 99.9));
+            row.put("maxMs", endpoint.latency.getTotalCount() == 0 ? 0 : endpoint.latency.getMaxValue() / 1000.0);
+            perEndpoint.add(row);
+            System.out.printf("  %-14s %9d %7d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint.name, requests,
+                    endpoint.errors.sum(), endpoint.dropped.sum(), requests / elapsed,
+                    row.get("p50Ms"), row.get("p99Ms"), row.get("p999Ms"), row.get("maxMs"));
+        }
+        double achieved = completed / elapsed;
+        boolean sustained = dropped == 0 && achieved >= rate * SUSTAINED && errors <= completed * MAX_ERROR_RATE;
+        System.out.printf("  achieved %.1f req/s of %.0f%s%n", achieved, rate, sustained ? "" : " - NOT SUSTAINED");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rate", rate);
+        result.put("achieved", achieved);
+        result.put("sustained", sustained);
+        result.put("endpoints", perEndpoint);
+        return result;
+    }
+
+    private static double millis(OpenLoopDriver.Endpoint endpoint, double percentile) {
+        return endpoint.latency.getTotalCount() == 0 ? 0 : endpoint.latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static HttpRequest json(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest form(String url, Map<String, String> fields) {
+        StringJoiner body = new StringJoiner("&");
+        fields.forEach((k, v) -> body.add(k + "=" + URLEncoder.encode(v, StandardCharsets.UTF_8)));
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    // Same shape as the benchmark rules: a few conditions joined by AND/OR
+    private static String rule(Random random) {
+        StringBuilder rule = new StringBuilder();
+        int conditions = 2 + random.nextInt(5);
+        for (int c = 0; c < conditions; c++) {
+            if (c > 0) rule.append(random.nextBoolean() ? " AND " : " OR ");
+            rule.append(condition(random));
+        }
+        return rule.toString();
+    }
+
+    private static String condition(Random random) {
+        if (random.nextInt(3) == 0) {
+            return "department " + (random.nextBoolean() ? "=" : "!=") + " '" + DEPARTMENTS[random.nextInt(DEPARTMENTS.length)] + "'";
+        }
+        String attribute = NUMERIC[random.nextInt(NUMERIC.length)];
+        return attribute + " " + NUMERIC_OPERATORS[random.nextInt(NUMERIC_OPERATORS.length)] + " " + value(attribute, random);
+    }
+
+    // Every attribute the generated rules use, so evaluation never stops on a missing variable
+    private static Map<String, Object> record(Random random) {
+        Map<String, Object> record = new HashMap<>();
+        for (String attribute : NUMERIC) record.put(attribute, value(attribute, random));
+        record.put("department", DEPARTMENTS[random.nextInt(DEPARTMENTS.length)]);
+        record.put("name", "Employee" + random.nextInt(1000));
+        record.put("email", "employee" + random.nextInt(1000) + "@example.com");
+        return record;
+    }
+
+    private static int value(String attribute, Random random) {
+        switch (attribute) {
+            case "age": return 18 + random.nextInt(50);
+            case "salary": return 20000 + 1000 * random.nextInt(100);
+            default: return random.nextInt(30);
+        }
+    }
+}
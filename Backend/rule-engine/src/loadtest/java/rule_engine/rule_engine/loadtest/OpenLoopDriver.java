@@ -0,0 +1,128 @@
+package rule_engine.rule_engine.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Sends requests at a fixed rate whether or not earlier ones have come back (open loop), so a slow
+// server doesn't slow the load down and hide its own latency. Each request's latency is measured from
+// when it was due to be sent, not when it actually went out, so queueing on our side counts too
+// (no coordinated omission).
+//
+// Once maxInFlight requests are outstanding, further ones are dropped and counted instead of piling up
+// without bound - any drops mean the server can't keep up with the rate.
+class OpenLoopDriver {
+
+    // One endpoint's share of the mix, and what it saw during a step
+    static class Endpoint {
+        final String name;
+        final int weight;
+        final Supplier<HttpRequest> requests;
+        // Microseconds, resized as needed
+        final Histogram latency = new ConcurrentHistogram(3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+
+        Endpoint(String name, int weight, Supplier<HttpRequest> requests) {
+            this.name = name;
+            this.weight = weight;
+            this.requests = requests;
+        }
+
+        void reset() {
+            latency.reset();
+            ok.reset();
+            errors.reset();
+            dropped.reset();
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Endpoint> endpoints;
+    private final Endpoint[] schedule;
+    private final int maxInFlight;
+
+    OpenLoopDriver(HttpClient client, List<Endpoint> endpoints, int maxInFlight) {
+        this.client = client;
+        this.endpoints = endpoints;
+        this.maxInFlight = maxInFlight;
+        // Weights spread over a fixed cycle (evaluate:8,all:1 -> 8 evaluates, 1 all, repeat) so every step
+        // sees exactly the same mix
+        List<Endpoint> cycle = new ArrayList<>();
+        int total = endpoints.stream().mapToInt(e -> e.weight).sum();
+        double[] credit = new double[endpoints.size()];
+        for (int i = 0; i < total; i++) {
+            int best = 0;
+            for (int e = 0; e < endpoints.size(); e++) {
+                credit[e] += (double) endpoints.get(e).weight / total;
+                if (credit[e] > credit[best]) best = e;
+            }
+            credit[best] -= 1;
+            cycle.add(endpoints.get(best));
+        }
+        this.schedule = cycle.toArray(new Endpoint[0]);
+    }
+
+    // Runs rate requests/s for warmup + measure seconds; only requests due after the warm-up are recorded.
+    // Returns once every request sent has completed (or timed out), with the seconds it took the measured
+    // ones to complete - longer than measureSeconds when the server fell behind.
+    double run(double rate, int warmupSeconds, int measureSeconds) throws InterruptedException {
+        for (Endpoint endpoint : endpoints) endpoint.reset();
+        LongAccumulator lastCompleted = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(measureSeconds);
+
+        for (long i = 0; ; i++) {
+            long due = start + (long) (i * interval);
+            if (due >= end) break;
+            long wait;
+            // No spinning: the server usually shares the machine. Oversleeping delays the send a little, but
+            // latency counts from the due time anyway
+            while ((wait = due - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+
+            Endpoint endpoint = schedule[(int) (i % schedule.length)];
+            boolean measured = due >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                if (measured) endpoint.dropped.increment();
+                continue;
+            }
+            HttpRequest request;
+            try {
+                request = endpoint.requests.get();
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long micros = (System.nanoTime() - due) / 1000;
+                inFlight.release();
+                if (!measured) return;
+                lastCompleted.accumulate(System.nanoTime());
+                if (error != null || response.statusCode() >= 400) {
+                    endpoint.errors.increment();
+                } else {
+                    endpoint.ok.increment();
+                }
+                endpoint.latency.recordValue(Math.max(micros, 1));
+            });
+        }
+
+        // Let stragglers finish so they don't land in the next step
+        if (inFlight.tryAcquire(maxInFlight, 60, TimeUnit.SECONDS)) inFlight.release(maxInFlight);
+        return Math.max(lastCompleted.get() - measureFrom, end - measureFrom) / 1e9;
+    }
+}
@@ -0,0 +1,23 @@
+package rule_engine.rule_engine.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+@EnableScheduling
+public class EvaluationConfig {
+
+    // Dedicated pool for batch evaluation so big batches don't eat the common pool
+    // (parallel streams, CompletableFuture etc. elsewhere in the JVM)
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool ruleEvaluationPool(@Value("${rule-engine.batch.parallelism:0}") int parallelism) {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        return new ForkJoinPool(parallelism);
+    }
+}
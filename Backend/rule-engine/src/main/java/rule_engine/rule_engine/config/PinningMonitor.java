@@ -0,0 +1,66 @@
+package rule_engine.rule_engine.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+
+// In virtual-thread mode, reports virtual threads that stay pinned to their carrier (blocking inside
+// synchronized, typically in the JDBC driver) for longer than the threshold. Every one of those holds a
+// carrier thread hostage, so a steady stream of them means we're back to platform-thread scaling.
+// Uses an in-process JFR stream, so it works without starting a recording from outside.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class PinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    @Value("${rule-engine.virtual-threads.pinning-threshold-ms:20}")
+    private long thresholdMs;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private RecordingStream stream;
+
+    @PostConstruct
+    void start() {
+        Counter pinned = Counter.builder("rules.virtual.pinned")
+                .description("Virtual threads pinned for longer than the threshold")
+                .register(registry);
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, event -> {
+            pinned.increment();
+            log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), describe(event.getStackTrace()));
+        });
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "<no stack trace>";
+        StringJoiner joiner = new StringJoiner(" <- ");
+        for (RecordedFrame frame : stackTrace.getFrames().subList(0, Math.min(LOGGED_FRAMES, stackTrace.getFrames().size()))) {
+            joiner.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber());
+        }
+        return joiner.toString();
+    }
+}
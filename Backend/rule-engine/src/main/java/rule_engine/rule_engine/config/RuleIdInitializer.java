@@ -0,0 +1,43 @@
+package rule_engine.rule_engine.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import rule_engine.rule_engine.models.Rule;
+
+// Rule ids used to come from an auto-increment column; now they come from the rule_id_sequence table.
+// Before anything is inserted, make sure the generator's next block starts above every existing id,
+// whichever end of the block Hibernate treats the stored value as. Runs at startup, before the web
+// server takes requests; instances starting at the same time against an empty table could race, so
+// start the first one alone.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rule-engine.store", havingValue = "jpa", matchIfMissing = true)
+public class RuleIdInitializer {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Only here so the schema (and generator table) exists before we run
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    void init() {
+        long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from rule", Long.class);
+        long floor = maxId + Rule.ID_BLOCK + 1;
+        Integer rows = jdbcTemplate.queryForObject(
+                "select count(*) from rule_id_sequence where sequence_name = 'rule'", Integer.class);
+        if (rows == null || rows == 0) {
+            jdbcTemplate.update("insert into rule_id_sequence (sequence_name, next_val) values ('rule', ?)", floor);
+            log.info("Rule ids start at {}", floor);
+        } else if (jdbcTemplate.update(
+                "update rule_id_sequence set next_val = ? where sequence_name = 'rule' and next_val < ?", floor, floor) > 0) {
+            log.info("Moved rule id generator past existing id {}", maxId);
+        }
+    }
+}
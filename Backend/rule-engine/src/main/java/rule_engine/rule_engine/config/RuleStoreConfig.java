@@ -0,0 +1,34 @@
+package rule_engine.rule_engine.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import rule_engine.rule_engine.repositories.FileRuleStore;
+import rule_engine.rule_engine.repositories.JdbcLimiter;
+import rule_engine.rule_engine.repositories.JpaRuleStore;
+import rule_engine.rule_engine.repositories.RuleRepository;
+import rule_engine.rule_engine.repositories.RuleStore;
+
+import java.nio.file.Path;
+
+// Picks the rule store from rule-engine.store (jpa or file, see RuleStore).
+// The "file" profile (application-file.properties) also switches off the datasource/JPA auto-configuration,
+// so the app starts without a database.
+@Configuration
+public class RuleStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "rule-engine.store", havingValue = "jpa", matchIfMissing = true)
+    public RuleStore jpaRuleStore(RuleRepository ruleRepository, JdbcLimiter jdbcLimiter) {
+        return new JpaRuleStore(ruleRepository, jdbcLimiter);
+    }
+
+    @Bean(initMethod = "open", destroyMethod = "close")
+    @ConditionalOnProperty(name = "rule-engine.store", havingValue = "file")
+    public RuleStore fileRuleStore(@Value("${rule-engine.file-store.dir:data}") String dir,
+                                   @Value("${rule-engine.file-store.fsync:true}") boolean fsync,
+                                   @Value("${rule-engine.file-store.compact-after-records:10000}") long compactAfterRecords) {
+        return new FileRuleStore(Path.of(dir), fsync, compactAfterRecords);
+    }
+}
@@ -0,0 +1,25 @@
+package rule_engine.rule_engine.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import rule_engine.rule_engine.parsers.AttributeSchema;
+
+import java.util.List;
+
+// Installs the attribute catalog from rule-engine.schema.* before anything parses or compiles a rule.
+// Adding an attribute is a config change; removing one makes stored rules that use it fail to evaluate.
+@Slf4j
+@Configuration
+public class SchemaConfig {
+
+    @Bean
+    public AttributeSchema attributeSchema(@Value("${rule-engine.schema.numeric:age,salary,experience}") List<String> numeric,
+                                           @Value("${rule-engine.schema.string:department,name,email}") List<String> strings) {
+        AttributeSchema schema = new AttributeSchema(numeric, strings);
+        AttributeSchema.install(schema);
+        log.info("Attribute schema: numeric {}, string {}", schema.numericAttributes(), schema.stringAttributes());
+        return schema;
+    }
+}
@@ -1,37 +1,63 @@
 package rule_engine.rule_engine.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import rule_engine.rule_engine.models.BulkCreateResult;
+import rule_engine.rule_engine.models.ColumnarBatch;
 import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleCreateRequest;
+import rule_engine.rule_engine.models.RuleSummary;
+import rule_engine.rule_engine.parsers.CompiledRule;
+import rule_engine.rule_engine.parsers.RuleCombiner;
+import rule_engine.rule_engine.services.RuleSetSnapshot;
 import rule_engine.rule_engine.services.RulesService;
 
+import java.io.IOException;
 import java.util.*;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/rules")
 public class RuleController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    // Evaluations read the rule set once and report which version answered them in this header,
+    // so results can be matched to the rules that produced them while rules are being edited
+    private static final String RULE_SET_VERSION = "X-Rule-Set-Version";
+
     @Autowired
     private RulesService rulesService;
 
     @PostMapping("/create")
     public Rule createRule(@RequestParam String ruleString, @RequestParam String description) {
         try {
-            System.out.println("Received ruleString: " + ruleString);
-            System.out.println("Received description: " + description);
+            log.debug("Received ruleString: {}, description: {}", ruleString, description);
             return rulesService.createRule(ruleString, description);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
+    // JSON array of {ruleString, description}; returns {index, id} or {index, error} per item, in order.
+    // Items that fail don't stop the rest.
+    @PostMapping("/bulk")
+    public List<BulkCreateResult> createRules(@RequestBody List<RuleCreateRequest> requests) {
+        return rulesService.createRules(requests);
+    }
+
     @PostMapping("/combine")
     public Rule combineRule(@RequestParam String ruleString) {
         try {
-            String[] ruleArr = ruleString.split(",");
-            List<String> ruleList = Arrays.asList(ruleArr);
+            // Commas inside IN (...) lists and quotes don't separate rules
+            List<String> ruleList = RuleCombiner.splitRuleList(ruleString);
 
             return rulesService.combineRules(ruleList);
         } catch (Exception e) {
@@ -44,27 +70,130 @@ public class RuleController {
         return rulesService.getRuleById(id);
     }
 
+    // Keyset-paginated listing without ASTs. Pass the last id of a page as `after` to get the next one;
+    // a page shorter than `limit` is the last.
+    @GetMapping("/list")
+    public List<RuleSummary> listRules(@RequestParam(defaultValue = "0") long after,
+                                       @RequestParam(defaultValue = "100") int limit,
+                                       @RequestParam(defaultValue = "false") boolean includeRuleString) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return rulesService.getRuleSummaries(after, limit, includeRuleString);
+    }
+
     @GetMapping("/all")
     public List<Rule> getAllRules() {
         return rulesService.getAllRules();
     }
 
+    private RuleSetSnapshot ruleSet(HttpServletResponse response) {
+        return versioned(rulesService.getRuleSet(), response);
+    }
+
+    private RuleSetSnapshot versioned(RuleSetSnapshot snapshot, HttpServletResponse response) {
+        response.setHeader(RULE_SET_VERSION, Long.toString(snapshot.getVersion()));
+        return snapshot;
+    }
+
     @PostMapping("/evaluate/{id}")
-    public boolean evaluateRule(@PathVariable Long id, @RequestBody Map<String, Object> data) {
+    public boolean evaluateRule(@PathVariable Long id, @RequestBody Map<String, Object> data, HttpServletResponse response) {
         try {
-            Optional<Rule> rule = rulesService.getRuleById(id);
+            Optional<CompiledRule> rule = rulesService.getCompiledRule(ruleSet(response), id);
             if (rule.isPresent()) {
                 return rulesService.evaluateRule(rule.get(), data);
             } else {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"Rule with ID " + id + " not found");
             }
         } catch (Exception e) {
-            System.out.println(e.getMessage());
+            log.debug("Evaluating rule {} failed: {}", id, e.getMessage());
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error evaluating rule: " + e.getMessage(), e);
         }
     }
 
-    
+    // One record against several rules: {"<id>": true/false, ...}
+    @PostMapping("/evaluate")
+    public Map<Long, Boolean> evaluateRules(@RequestParam List<Long> ids, @RequestBody Map<String, Object> data, HttpServletResponse response) {
+        Map<Long, CompiledRule> rules = rulesService.getCompiledRules(ruleSet(response), ids);
+        for (Long id : ids) {
+            if (!rules.containsKey(id)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rule with ID " + id + " not found");
+            }
+        }
+        try {
+            return rulesService.evaluateRules(rules, data);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error evaluating rules: " + e.getMessage(), e);
+        }
+    }
+
+    @PostMapping("/evaluate/{id}/batch")
+    public boolean[] evaluateBatch(@PathVariable Long id, @RequestBody List<Map<String, Object>> records, HttpServletResponse response) {
+        Optional<CompiledRule> rule = rulesService.getCompiledRule(ruleSet(response), id);
+        if (rule.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rule with ID " + id + " not found");
+        }
+        try {
+            return rulesService.evaluateBatch(rule.get(), records);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error evaluating batch: " + e.getMessage(), e);
+        }
+    }
+
+    // Newline-delimited JSON in, newline-delimited JSON out: {"index":n,"result":true} or {"index":n,"error":"..."}
+    // per record, streamed back as they're evaluated. The body is never buffered as a whole.
+    @PostMapping(value = "/evaluate/{id}/stream", consumes = NDJSON, produces = NDJSON)
+    public void evaluateStream(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<CompiledRule> rule = rulesService.getCompiledRule(ruleSet(response), id);
+        if (rule.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rule with ID " + id + " not found");
+        }
+        response.setContentType(NDJSON);
+        rulesService.evaluateStream(rule.get(), request.getInputStream(), response.getOutputStream());
+    }
+
+    // Returns a bitmap as 64-bit words: bit (i % 64) of word (i / 64) is the result for record i
+    @PostMapping("/evaluate/{id}/columnar")
+    public long[] evaluateColumnar(@PathVariable Long id, @RequestBody ColumnarBatch batch, HttpServletResponse response) {
+        Optional<CompiledRule> rule = rulesService.getCompiledRule(ruleSet(response), id);
+        if (rule.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rule with ID " + id + " not found");
+        }
+        try {
+            return rulesService.evaluateColumnar(rule.get(), batch);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error evaluating batch: " + e.getMessage(), e);
+        }
+    }
+
+    @PostMapping("/match")
+    public List<Long> matchRules(@RequestBody Map<String, Object> data, HttpServletResponse response) {
+        // The newest version with a built network, which can be a write or two behind the other endpoints
+        RuleSetSnapshot snapshot = versioned(rulesService.getMatchableRuleSet(), response);
+        try {
+            return rulesService.matchRules(snapshot, data);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error matching rules: " + e.getMessage(), e);
+        }
+    }
+
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats() {
+        return rulesService.getCacheStats();
+    }
+
+    // The attributes rules may use: {"numeric": [...], "string": [...]}
+    @GetMapping("/schema")
+    public Map<String, List<String>> getSchema() {
+        return rulesService.getSchema();
+    }
+
+    // How much AST sharing between loaded rules is saving
+    @GetMapping("/intern/stats")
+    public Map<String, Object> getInternStats() {
+        return rulesService.getInternStats();
+    }
+
     @DeleteMapping("/{id}")
     public void deleteRule(@PathVariable Long id) {
         try {
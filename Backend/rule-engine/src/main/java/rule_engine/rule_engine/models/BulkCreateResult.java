@@ -0,0 +1,15 @@
+package rule_engine.rule_engine.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Outcome of one item of a bulk create: the new rule's id, or why it wasn't created
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkCreateResult {
+    private int index;
+    private Long id;
+    private String error;
+}
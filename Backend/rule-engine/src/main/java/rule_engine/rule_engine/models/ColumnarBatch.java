@@ -0,0 +1,23 @@
+package rule_engine.rule_engine.models;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records submitted column by column instead of one Map per record.
+// Numeric attributes are plain arrays, string attributes are dictionary-encoded:
+// codes[i] is the index into dictionary of record i's value.
+@Data
+public class ColumnarBatch {
+    private int size;
+    private Map<String, double[]> numeric = new HashMap<>();
+    private Map<String, StringColumn> strings = new HashMap<>();
+
+    @Data
+    public static class StringColumn {
+        private List<String> dictionary;
+        private int[] codes;
+    }
+}
@@ -1,13 +1,23 @@
 package rule_engine.rule_engine.models;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Data
 public class Node {
     public String type;        // "operator" or "operand"
-    public String operator;    // AND, OR, >, <, =.
+    public String operator;    // AND, OR, >, <, =, IN, NOT IN.
     public String value;       // value for conditions (age, department, etc.)
     public Node left;
     public Node right;
+    // AND/OR over three or more operands; left/right are null then.
+    // For IN / NOT IN, one "literal" node per value
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<Node> children;
 
     public Node() {
     }
@@ -17,4 +27,43 @@ public class Node {
         this.operator = operator;
         this.value = value;
     }
+
+    // AND/OR node over operands, using left/right for two and children for more
+    public static Node join(String operator, List<Node> operands) {
+        Node node = new Node("operator", operator, null);
+        if (operands.size() == 2) {
+            node.left = operands.get(0);
+            node.right = operands.get(1);
+        } else {
+            node.children = operands;
+        }
+        return node;
+    }
+
+    // variable IN (values) / variable NOT IN (values). Unlike other conditions, value is just the attribute
+    public static Node membership(String variable, String operator, List<String> values) {
+        Node node = new Node("operand", operator, variable);
+        List<Node> literals = new ArrayList<>(values.size());
+        for (String value : values) literals.add(new Node("literal", null, value));
+        node.children = literals;
+        return node;
+    }
+
+    @JsonIgnore
+    public boolean isMembership() {
+        return "operand".equals(type) && children != null;
+    }
+
+    // The values of an IN / NOT IN
+    @JsonIgnore
+    public List<String> getLiterals() {
+        List<String> literals = new ArrayList<>(children.size());
+        for (Node child : children) literals.add(child.value);
+        return literals;
+    }
+
+    // Operands in evaluation order, whichever way they're stored
+    public List<Node> operands() {
+        return children != null ? children : Arrays.asList(left, right);
+    }
 }
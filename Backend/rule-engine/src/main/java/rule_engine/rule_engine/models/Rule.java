@@ -1,21 +1,69 @@
 package rule_engine.rule_engine.models;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.Length;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.LazyGroup;
 import rule_engine.rule_engine.utils.ASTConverter;
 
 @Data
 @Entity
 public class Rule {
 
+    // IDENTITY would make Hibernate insert rows one at a time to learn each id. A pooled table generator
+    // (MySQL has no sequences) hands out ids in blocks of ID_BLOCK so bulk inserts can be batched.
+    // RuleIdInitializer moves it past ids handed out by the old auto-increment column.
+    public static final int ID_BLOCK = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "rule_ids")
+    @TableGenerator(name = "rule_ids", table = "rule_id_sequence", pkColumnValue = "rule", allocationSize = ID_BLOCK)
     private Long id;
 
+    // The big columns are lazy (needs the build's bytecode enhancement) and fetched together on first access,
+    // so loading a Rule only for its id/description doesn't drag the LOBs along. Listings use RuleSummary instead.
     @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("lobs")
     private String ruleString;
     private String description;
 
     @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("lobs")
+    @Column(name = "ast_binary", length = Length.LONG32)
     @Convert(converter = ASTConverter.class)
+    // ASTs are never modified in place (they're interned and shared), so Hibernate doesn't need to
+    // snapshot them through an encode/decode round trip for dirty checking
+    @Immutable
     private Node ast;
+
+    // The AST as JSON, from before ast_binary existed. Only read now: RulesService rewrites
+    // these rows into the binary column (and clears this one) the first time it loads them.
+    @JsonIgnore
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("lobs")
+    @Column(name = "ast")
+    private String legacyAst;
+
+    // Decoded on first access rather than in @PostLoad, which would load the lazy columns for every row
+    public Node getAst() {
+        if (ast == null && legacyAst != null) {
+            ast = ASTConverter.fromJson(legacyAst);
+        }
+        return ast;
+    }
+
+    // Moves a legacy JSON AST into the binary column; the caller saves
+    public void migrateLegacyAst() {
+        ast = getAst();
+        legacyAst = null;
+    }
+
+    @JsonIgnore
+    public boolean isLegacy() {
+        return legacyAst != null;
+    }
 }
@@ -0,0 +1,10 @@
+package rule_engine.rule_engine.models;
+
+import lombok.Data;
+
+// One rule of a bulk create
+@Data
+public class RuleCreateRequest {
+    private String ruleString;
+    private String description;
+}
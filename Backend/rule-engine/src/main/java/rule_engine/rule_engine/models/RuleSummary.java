@@ -0,0 +1,22 @@
+package rule_engine.rule_engine.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// What the rule listing sends back: no AST, and the rule string only when asked for.
+// Built straight from a JPQL constructor expression, so no Rule entities (or LOBs) are loaded.
+@Data
+@AllArgsConstructor
+public class RuleSummary {
+
+    private Long id;
+    private String description;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String ruleString;
+
+    public RuleSummary(Long id, String description) {
+        this(id, description, null);
+    }
+}
@@ -0,0 +1,181 @@
+package rule_engine.rule_engine.parsers;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+// Uses the sampled per-child stats of a profiled rule to reorder AND/OR children:
+// for AND the child most likely to be false per nanosecond goes first, for OR the one most likely to be true.
+// The result is a brand new tree (fresh counters, same leaves), the old one is never modified.
+//
+// Reordering never changes a result or an error. AND/OR are commutative for records that evaluate
+// cleanly, and a reordered node only takes the new order for those (see ReorderedNode): a record missing
+// an attribute the children read runs the written order instead. A child that contains an invalid
+// condition (throws whenever reached) pins its node in place, since it would throw for every record.
+@Slf4j
+public class AdaptiveReorderer {
+
+    // Only reorder when the expected cost drops by at least this much, so we don't flip-flop on noise
+    private static final double MIN_IMPROVEMENT = 0.10;
+
+    public static CompiledRule reorder(CompiledRule rule, long minSamples) {
+        if (rule.isBytecode()) return rule;
+        CompiledNode root = reorder(rule.root(), minSamples, rule.getRuleId(), "root");
+        return root == rule.root() ? rule : rule.withRoot(root);
+    }
+
+    private static CompiledNode reorder(CompiledNode node, long minSamples, Long ruleId, String path) {
+        if (node instanceof ReorderedNode) {
+            // Reordered before: look at the current order's stats, but keep falling back to the written one
+            ReorderedNode previous = (ReorderedNode) node;
+            CompiledNode next = reorder(previous.reordered, minSamples, ruleId, path);
+            if (next == previous.reordered) return node;
+            if (next instanceof ReorderedNode) next = ((ReorderedNode) next).reordered;
+            return new ReorderedNode(next, previous.original, previous.required);
+        }
+        boolean and = node instanceof AndNode;
+        if (!and && !(node instanceof OrNode)) return node;
+
+        CompiledNode[] children = and ? ((AndNode) node).children : ((OrNode) node).children;
+        ChildStats stats = and ? ((AndNode) node).stats : ((OrNode) node).stats;
+        if (stats == null) return node;
+
+        // Children first - they have their own stats
+        CompiledNode[] reordered = new CompiledNode[children.length];
+        boolean changed = false;
+        for (int i = 0; i < children.length; i++) {
+            reordered[i] = reorder(children[i], minSamples, ruleId, path + "." + i);
+            changed |= reordered[i] != children[i];
+        }
+
+        Integer[] order = newOrder(children, stats, and, minSamples);
+        ComparisonNode[] required = order == null ? null : required(children);
+        if (required != null) {
+            double before = expectedCost(identity(children.length), stats, and);
+            double after = expectedCost(order, stats, and);
+            if (after < before * (1 - MIN_IMPROVEMENT)) {
+                CompiledNode[] sorted = new CompiledNode[children.length];
+                for (int i = 0; i < order.length; i++) sorted[i] = reordered[order[i]];
+                log.info("Reordered {} at {} in rule {}: {} -> {} (expected cost {} ns -> {} ns)",
+                        and ? "AND" : "OR", path, ruleId, describe(children), describe(sorted),
+                        String.format("%.1f", before), String.format("%.1f", after));
+                // The written order isn't profiled, it only runs for records that would break the new one
+                CompiledNode original = and ? new AndNode(reordered, null) : new OrNode(reordered, null);
+                ChildStats fresh = new ChildStats(sorted.length);
+                return new ReorderedNode(and ? new AndNode(sorted, fresh) : new OrNode(sorted, fresh), original, required);
+            }
+        }
+
+        if (!changed) return node;
+        ChildStats fresh = new ChildStats(reordered.length);
+        return and ? new AndNode(reordered, fresh) : new OrNode(reordered, fresh);
+    }
+
+    // One condition per attribute (numeric or string slot) read below these children, or null if
+    // something below isn't a node we know can't throw once its attributes are present
+    private static ComparisonNode[] required(CompiledNode[] children) {
+        Map<Integer, ComparisonNode> bySlot = new LinkedHashMap<>();
+        for (CompiledNode child : children) {
+            if (!collectRequired(child, bySlot)) return null;
+        }
+        return bySlot.values().toArray(new ComparisonNode[0]);
+    }
+
+    private static boolean collectRequired(CompiledNode node, Map<Integer, ComparisonNode> bySlot) {
+        if (node instanceof ComparisonNode) {
+            ComparisonNode condition = (ComparisonNode) node;
+            boolean numeric = node instanceof NumericComparison || node instanceof NumericIn;
+            bySlot.putIfAbsent(condition.slot * 2 + (numeric ? 0 : 1), condition);
+            return true;
+        }
+        if (node instanceof ConstantNode) return true;
+        if (node instanceof ReorderedNode) return collectRequired(((ReorderedNode) node).original, bySlot);
+        CompiledNode[] children = node instanceof AndNode ? ((AndNode) node).children
+                : node instanceof OrNode ? ((OrNode) node).children : null;
+        if (children == null) return false;
+        for (CompiledNode child : children) {
+            if (!collectRequired(child, bySlot)) return false;
+        }
+        return true;
+    }
+
+    // Sorted child indexes, or null if we don't have enough data or the node is pinned
+    static Integer[] newOrder(CompiledNode[] children, ChildStats stats, boolean and, long minSamples) {
+        for (int i = 0; i < children.length; i++) {
+            if (stats.evaluations[i] < minSamples || containsInvalid(children[i])) return null;
+        }
+        Integer[] order = identity(children.length);
+        // Stable sort, so ties keep the author's order
+        Arrays.sort(order, Comparator.comparingDouble(i -> rank(stats, i, and)));
+        return order;
+    }
+
+    // Cost per unit of "decides the outcome": AND is decided by a false, OR by a true
+    private static double rank(ChildStats stats, int child, boolean and) {
+        double p = (double) stats.trues[child] / stats.evaluations[child];
+        double decides = and ? 1 - p : p;
+        double cost = (double) stats.nanos[child] / stats.evaluations[child];
+        return decides == 0 ? Double.POSITIVE_INFINITY : cost / decides;
+    }
+
+    // Expected nanos per evaluation for a given order, treating children as independent
+    static double expectedCost(Integer[] order, ChildStats stats, boolean and) {
+        double total = 0;
+        double reach = 1;
+        for (int child : order) {
+            double p = (double) stats.trues[child] / stats.evaluations[child];
+            total += reach * stats.nanos[child] / stats.evaluations[child];
+            reach *= and ? p : 1 - p;
+        }
+        return total;
+    }
+
+    private static boolean containsInvalid(CompiledNode node) {
+        if (node instanceof InvalidNode) return true;
+        if (node instanceof ReorderedNode) return containsInvalid(((ReorderedNode) node).original);
+        CompiledNode[] children = node instanceof AndNode ? ((AndNode) node).children
+                : node instanceof OrNode ? ((OrNode) node).children : null;
+        if (children != null) {
+            for (CompiledNode child : children) {
+                if (containsInvalid(child)) return true;
+            }
+        }
+        return false;
+    }
+
+    static Integer[] identity(int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        return order;
+    }
+
+    private static String describe(CompiledNode[] children) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (CompiledNode child : children) joiner.add(describe(child));
+        return joiner.toString();
+    }
+
+    private static String describe(CompiledNode node) {
+        if (node instanceof ReorderedNode) return describe(((ReorderedNode) node).reordered);
+        if (node instanceof AndNode) return "AND(" + ((AndNode) node).children.length + ")";
+        if (node instanceof OrNode) return "OR(" + ((OrNode) node).children.length + ")";
+        if (node instanceof StringEquals) return ((StringEquals) node).variable + "=" + ((StringEquals) node).constant;
+        if (node instanceof StringNotEquals) return ((StringNotEquals) node).variable + "!=" + ((StringNotEquals) node).constant;
+        if (node instanceof NumericComparison) {
+            NumericComparison comparison = (NumericComparison) node;
+            String operator = node instanceof GreaterThan ? ">" : node instanceof GreaterOrEqual ? ">="
+                    : node instanceof LessThan ? "<" : node instanceof LessOrEqual ? "<="
+                    : node instanceof NumericEquals ? "=" : "!=";
+            return comparison.variable + operator + comparison.constant;
+        }
+        if (node instanceof NumericIn) {
+            NumericIn in = (NumericIn) node;
+            return in.variable + (in.negated ? " NOT IN " : " IN ") + Arrays.toString(in.values);
+        }
+        if (node instanceof StringIn) {
+            StringIn in = (StringIn) node;
+            return in.variable + (in.negated ? " NOT IN " : " IN ") + in.constants;
+        }
+        return node.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,95 @@
+package rule_engine.rule_engine.parsers;
+
+import java.util.*;
+
+// The attributes rules may use, and where each one lives in an EvaluationContext.
+// Numeric attributes take every comparison and get a slot in the double[] of the context;
+// string attributes take =, !=, IN and NOT IN and get a slot in the int[] of dictionary codes.
+// This is the one catalog: the parser, the compiler, the optimizer and the interpreter all ask it.
+//
+// Set once at startup from rule-engine.schema.* (see SchemaConfig). Rules compiled against one schema
+// keep their slots, so it isn't meant to change while rules are being evaluated.
+public final class AttributeSchema {
+
+    private static final List<String> NUMERIC_OPERATORS = List.of(">", "<", "=", ">=", "<=", "!=", "IN", "NOT IN");
+    private static final List<String> STRING_OPERATORS = List.of("=", "!=", "IN", "NOT IN");
+
+    private static volatile AttributeSchema current = new AttributeSchema(
+            List.of("age", "salary", "experience"),
+            List.of("department", "name", "email"));
+
+    private final String[] numericNames;
+    private final String[] stringNames;
+    // slot for numeric attributes, ~slot for string ones
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    public AttributeSchema(List<String> numeric, List<String> strings) {
+        numericNames = numeric.stream().map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        stringNames = strings.stream().map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        for (int i = 0; i < numericNames.length; i++) add(numericNames[i], i);
+        for (int i = 0; i < stringNames.length; i++) add(stringNames[i], ~i);
+    }
+
+    private void add(String name, int slot) {
+        // Has to come out of the lexer as one bare word
+        if (List.of("AND", "OR", "IN", "NOT").contains(name) || !name.matches("[^\\s()'\",<>=!&|]+")) {
+            throw new IllegalArgumentException("Invalid attribute name: '" + name + "'");
+        }
+        if (slots.putIfAbsent(name, slot) != null) {
+            throw new IllegalArgumentException("Attribute '" + name + "' is declared twice");
+        }
+    }
+
+    public static AttributeSchema get() {
+        return current;
+    }
+
+    public static void install(AttributeSchema schema) {
+        current = schema;
+    }
+
+    public boolean isAttribute(String name) {
+        return slots.containsKey(name);
+    }
+
+    public boolean isNumeric(String name) {
+        Integer slot = slots.get(name);
+        return slot != null && slot >= 0;
+    }
+
+    // Slot in the array for the attribute's type, or -1 if there's no such attribute
+    public int slot(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) return -1;
+        return slot >= 0 ? slot : ~slot;
+    }
+
+    public List<String> operators(String name) {
+        if (!isAttribute(name)) return List.of();
+        return isNumeric(name) ? NUMERIC_OPERATORS : STRING_OPERATORS;
+    }
+
+    public int numericCount() {
+        return numericNames.length;
+    }
+
+    public int stringCount() {
+        return stringNames.length;
+    }
+
+    String numericName(int slot) {
+        return numericNames[slot];
+    }
+
+    String stringName(int slot) {
+        return stringNames[slot];
+    }
+
+    public List<String> numericAttributes() {
+        return List.of(numericNames);
+    }
+
+    public List<String> stringAttributes() {
+        return List.of(stringNames);
+    }
+}
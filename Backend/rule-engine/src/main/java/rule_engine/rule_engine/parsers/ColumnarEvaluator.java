@@ -0,0 +1,203 @@
+package rule_engine.rule_engine.parsers;
+
+import rule_engine.rule_engine.models.ColumnarBatch;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Evaluates a compiled rule a column at a time instead of a record at a time.
+// Every condition produces a bitmap (bit i = record i) and AND/OR are just word-wise &/| over those,
+// so the inner loops are tight primitive compares with no boxing and no Map lookups.
+//
+// Unlike row-at-a-time evaluation there is no per-record short-circuit: every condition is evaluated
+// for the whole batch, so a missing column or a bad literal fails the batch even if some records
+// would never have reached it.
+public class ColumnarEvaluator {
+
+    static final int GT = 0, GE = 1, LT = 2, LE = 3, EQ = 4, NE = 5;
+
+    // The Vector API is an incubator module; only touch it when the JVM was started with it
+    private static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_API_AVAILABLE;
+    }
+
+    public static long[] evaluate(CompiledRule rule, ColumnarBatch batch, boolean useVectorApi) {
+        return evaluate(rule.interpreted(), batch, useVectorApi && VECTOR_API_AVAILABLE);
+    }
+
+    private static long[] evaluate(CompiledNode node, ColumnarBatch batch, boolean vector) {
+        int size = batch.getSize();
+        if (node instanceof AndNode) {
+            CompiledNode[] children = ((AndNode) node).children;
+            long[] result = evaluate(children[0], batch, vector);
+            for (int c = 1; c < children.length; c++) {
+                long[] other = evaluate(children[c], batch, vector);
+                for (int w = 0; w < result.length; w++) result[w] &= other[w];
+            }
+            return result;
+        }
+        if (node instanceof OrNode) {
+            CompiledNode[] children = ((OrNode) node).children;
+            long[] result = evaluate(children[0], batch, vector);
+            for (int c = 1; c < children.length; c++) {
+                long[] other = evaluate(children[c], batch, vector);
+                for (int w = 0; w < result.length; w++) result[w] |= other[w];
+            }
+            return result;
+        }
+        if (node instanceof ReorderedNode) {
+            // Order doesn't matter here, every child sees every record
+            return evaluate(((ReorderedNode) node).original, batch, vector);
+        }
+        if (node instanceof ConstantNode) {
+            return ((ConstantNode) node).value ? allSet(size) : new long[words(size)];
+        }
+        if (node instanceof NumericComparison) {
+            NumericComparison comparison = (NumericComparison) node;
+            double[] column = numericColumn(batch, comparison.variable);
+            long[] bits = new long[words(size)];
+            if (vector) {
+                VectorComparisons.compare(column, size, operatorOf(comparison), comparison.constant, bits);
+            } else {
+                compare(column, size, operatorOf(comparison), comparison.constant, bits);
+            }
+            return bits;
+        }
+        if (node instanceof StringEquals || node instanceof StringNotEquals) {
+            boolean equals = node instanceof StringEquals;
+            String variable = ((ComparisonNode) node).variable;
+            String constant = equals ? ((StringEquals) node).constant : ((StringNotEquals) node).constant;
+            ColumnarBatch.StringColumn column = stringColumn(batch, variable);
+
+            // Resolve the constant to a dictionary code once, then it's all int compares
+            int code = column.getDictionary().indexOf(constant);
+            long[] bits = new long[words(size)];
+            if (code >= 0) {
+                if (vector) {
+                    VectorComparisons.equalCodes(column.getCodes(), size, code, bits);
+                } else {
+                    int[] codes = column.getCodes();
+                    for (int i = 0; i < size; i++) {
+                        bits[i >>> 6] |= (codes[i] == code ? 1L : 0L) << i;
+                    }
+                }
+            }
+            return equals ? bits : not(bits, size);
+        }
+        if (node instanceof NumericIn) {
+            NumericIn in = (NumericIn) node;
+            double[] column = numericColumn(batch, in.variable);
+            long[] bits = new long[words(size)];
+            for (int i = 0; i < size; i++) {
+                bits[i >>> 6] |= (in.contains(column[i]) ? 1L : 0L) << i;
+            }
+            return in.negated ? not(bits, size) : bits;
+        }
+        if (node instanceof StringIn) {
+            StringIn in = (StringIn) node;
+            ColumnarBatch.StringColumn column = stringColumn(batch, in.variable);
+
+            // Which dictionary entries are in the set, worked out once per batch
+            List<String> dictionary = column.getDictionary();
+            Set<String> constants = new HashSet<>(in.constants);
+            boolean[] member = new boolean[dictionary.size()];
+            for (int d = 0; d < member.length; d++) member[d] = constants.contains(dictionary.get(d));
+            int[] codes = column.getCodes();
+            long[] bits = new long[words(size)];
+            for (int i = 0; i < size; i++) {
+                int code = codes[i];
+                bits[i >>> 6] |= (code >= 0 && code < member.length && member[code] ? 1L : 0L) << i;
+            }
+            return in.negated ? not(bits, size) : bits;
+        }
+        if (node instanceof InvalidNode) {
+            InvalidNode invalid = (InvalidNode) node;
+            if (invalid.variable != null) {
+                requireColumn(batch, invalid.variable);
+            }
+            throw new InvalidConditionException(invalid.error.getMessage());
+        }
+        throw new InvalidRuleException("Unsupported node for columnar evaluation: " + node.getClass().getSimpleName());
+    }
+
+    private static int operatorOf(NumericComparison comparison) {
+        if (comparison instanceof GreaterThan) return GT;
+        if (comparison instanceof GreaterOrEqual) return GE;
+        if (comparison instanceof LessThan) return LT;
+        if (comparison instanceof LessOrEqual) return LE;
+        if (comparison instanceof NumericEquals) return EQ;
+        return NE;
+    }
+
+    // Scalar fallback. One loop per operator so each is a simple counted loop the JIT can unroll.
+    static void compare(double[] column, int size, int operator, double constant, long[] bits) {
+        switch (operator) {
+            case GT: for (int i = 0; i < size; i++) bits[i >>> 6] |= (column[i] > constant ? 1L : 0L) << i; break;
+            case GE: for (int i = 0; i < size; i++) bits[i >>> 6] |= (column[i] >= constant ? 1L : 0L) << i; break;
+            case LT: for (int i = 0; i < size; i++) bits[i >>> 6] |= (column[i] < constant ? 1L : 0L) << i; break;
+            case LE: for (int i = 0; i < size; i++) bits[i >>> 6] |= (column[i] <= constant ? 1L : 0L) << i; break;
+            case EQ: for (int i = 0; i < size; i++) bits[i >>> 6] |= (column[i] == constant ? 1L : 0L) << i; break;
+            default: for (int i = 0; i < size; i++) bits[i >>> 6] |= (column[i] != constant ? 1L : 0L) << i; break;
+        }
+    }
+
+    private static double[] numericColumn(ColumnarBatch batch, String variable) {
+        double[] column = batch.getNumeric() == null ? null : batch.getNumeric().get(variable);
+        if (column == null) {
+            requireColumn(batch, variable);
+            throw new InvalidConditionException("Column '" + variable + "' must be numeric");
+        }
+        if (column.length < batch.getSize()) {
+            throw new InvalidConditionException("Column '" + variable + "' has " + column.length + " values, expected " + batch.getSize());
+        }
+        return column;
+    }
+
+    private static ColumnarBatch.StringColumn stringColumn(ColumnarBatch batch, String variable) {
+        ColumnarBatch.StringColumn column = batch.getStrings() == null ? null : batch.getStrings().get(variable);
+        if (column == null) {
+            requireColumn(batch, variable);
+            throw new InvalidConditionException("Column '" + variable + "' must be dictionary-encoded");
+        }
+        if (column.getDictionary() == null || column.getCodes() == null || column.getCodes().length < batch.getSize()) {
+            throw new InvalidConditionException("Column '" + variable + "' needs a dictionary and " + batch.getSize() + " codes");
+        }
+        return column;
+    }
+
+    private static void requireColumn(ColumnarBatch batch, String variable) {
+        boolean numeric = batch.getNumeric() != null && batch.getNumeric().containsKey(variable);
+        boolean string = batch.getStrings() != null && batch.getStrings().containsKey(variable);
+        if (!numeric && !string) {
+            throw new InvalidConditionException("Variable '" + variable + "' not found in context");
+        }
+    }
+
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    private static long[] allSet(int size) {
+        long[] bits = new long[words(size)];
+        Arrays.fill(bits, -1L);
+        clearTail(bits, size);
+        return bits;
+    }
+
+    private static long[] not(long[] bits, int size) {
+        for (int w = 0; w < bits.length; w++) bits[w] = ~bits[w];
+        clearTail(bits, size);
+        return bits;
+    }
+
+    // Bits past the last record stay zero so callers can count/iterate without knowing the size
+    private static void clearTail(long[] bits, int size) {
+        if ((size & 63) != 0) {
+            bits[bits.length - 1] &= (1L << size) - 1;
+        }
+    }
+}
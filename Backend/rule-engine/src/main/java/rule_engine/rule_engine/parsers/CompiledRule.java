@@ -0,0 +1,73 @@
+package rule_engine.rule_engine.parsers;
+
+import lombok.Getter;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A rule that has been through RuleCompiler - ready to evaluate, nothing left to parse
+public final class CompiledRule {
+
+    @Getter
+    private final Long ruleId;
+    @Getter
+    private final Node ast;
+    // Number of compiled nodes, used to weigh the rule in the cache
+    @Getter
+    private final int weight;
+    private final CompiledNode root;
+    // The node tree root was generated from - the same as root until the rule is promoted to bytecode.
+    // Columnar evaluation walks this one, a generated class has no tree to walk.
+    private final CompiledNode interpreted;
+    private final AtomicLong evaluations = new AtomicLong();
+
+    CompiledRule(Long ruleId, Node ast, CompiledNode root, int weight) {
+        this(ruleId, ast, root, root, weight);
+    }
+
+    CompiledRule(Long ruleId, Node ast, CompiledNode root, CompiledNode interpreted, int weight) {
+        this.ruleId = ruleId;
+        this.ast = ast;
+        this.root = root;
+        this.interpreted = interpreted;
+        this.weight = weight;
+    }
+
+    public boolean evaluate(Map<String, Object> context) {
+        try (EvaluationContext loaded = EvaluationContext.forThread(context)) {
+            return root.evaluate(loaded);
+        }
+    }
+
+    // For a record already converted, e.g. when several rules look at the same one
+    public boolean evaluate(EvaluationContext context) {
+        return root.evaluate(context);
+    }
+
+    // Adds to and returns how many times this instance has been evaluated.
+    // Exact rather than a LongAdder so exactly one caller sees the total cross any given count.
+    public long recordEvaluations(long count) {
+        return evaluations.addAndGet(count);
+    }
+
+    // True once RuleBytecodeCompiler has swapped the tree for a generated class
+    public boolean isBytecode() {
+        return root.getClass().isHidden();
+    }
+
+    // Same rule with a different (e.g. reordered) tree; keeps the evaluation count so promotion isn't delayed
+    CompiledRule withRoot(CompiledNode newRoot) {
+        CompiledRule copy = new CompiledRule(ruleId, ast, newRoot, weight);
+        copy.evaluations.set(evaluations.get());
+        return copy;
+    }
+
+    CompiledNode root() {
+        return root;
+    }
+
+    CompiledNode interpreted() {
+        return interpreted;
+    }
+}
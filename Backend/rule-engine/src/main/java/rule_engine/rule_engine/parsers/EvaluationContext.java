@@ -0,0 +1,138 @@
+package rule_engine.rule_engine.parsers;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// A record laid out by AttributeSchema slot: numbers in a double[], strings as StringDictionary codes in
+// an int[]. Compiled rules are bound to slots, so evaluating a condition is an array read and a primitive
+// compare - no hashing, no unboxing, no allocation.
+//
+// Each attribute is converted at most once per record, the first time a condition asks for it, however
+// many conditions or rules then look at it - and attributes no condition reaches are never converted.
+// Contexts are reusable: load() resets every slot, and forThread() hands out one per thread, so the
+// request path allocates nothing per record. Attributes the schema doesn't know are ignored.
+// Close the context once the record is evaluated (try-with-resources): a pooled thread's context
+// would otherwise keep the last request's record reachable until that thread evaluates again.
+public final class EvaluationContext implements AutoCloseable {
+
+    private static final byte PRESENT = 0, MISSING = 1, NULL = 2, NOT_A_NUMBER = 3, NOT_LOADED = 4;
+
+    private static final ThreadLocal<EvaluationContext> LOCAL = new ThreadLocal<>();
+
+    private final AttributeSchema schema;
+    final double[] numbers;
+    final int[] codes;
+    private final byte[] numberStates;
+    private final byte[] stringStates;
+    // Kept until close() so slots can be converted on demand
+    private Map<String, Object> record;
+
+    public EvaluationContext() {
+        this(AttributeSchema.get());
+    }
+
+    public EvaluationContext(AttributeSchema schema) {
+        this.schema = schema;
+        numbers = new double[schema.numericCount()];
+        codes = new int[schema.stringCount()];
+        numberStates = new byte[numbers.length];
+        stringStates = new byte[codes.length];
+    }
+
+    // This thread's context loaded with the record. Only valid until the next forThread() on the same thread.
+    public static EvaluationContext forThread(Map<String, Object> record) {
+        EvaluationContext context = LOCAL.get();
+        if (context == null || context.schema != AttributeSchema.get()) {
+            context = new EvaluationContext();
+            LOCAL.set(context);
+        }
+        return context.load(record);
+    }
+
+    public EvaluationContext load(Map<String, Object> record) {
+        this.record = record;
+        Arrays.fill(numberStates, NOT_LOADED);
+        Arrays.fill(stringStates, NOT_LOADED);
+        return this;
+    }
+
+    // Drops the record; slots not converted by now can't be any more
+    @Override
+    public void close() {
+        record = null;
+    }
+
+    // What the generated bytecode and the comparison nodes call; they throw what the interpreter would
+    double number(int slot) {
+        if (!hasNumber(slot)) throw error(schema.numericName(slot), numberStates[slot]);
+        return numbers[slot];
+    }
+
+    int code(int slot) {
+        if (!hasString(slot)) throw error(schema.stringName(slot), stringStates[slot]);
+        return codes[slot];
+    }
+
+    boolean hasNumber(int slot) {
+        byte state = numberStates[slot];
+        if (state == NOT_LOADED) state = loadNumber(slot);
+        return state == PRESENT;
+    }
+
+    boolean hasString(int slot) {
+        byte state = stringStates[slot];
+        if (state == NOT_LOADED) state = loadString(slot);
+        return state == PRESENT;
+    }
+
+    private byte loadNumber(int slot) {
+        String name = schema.numericName(slot);
+        Object value = record.get(name);
+        byte state;
+        if (value instanceof Number) {
+            numbers[slot] = ((Number) value).doubleValue();
+            state = PRESENT;
+        } else if (value != null) {
+            state = NOT_A_NUMBER;
+        } else {
+            state = record.containsKey(name) ? NULL : MISSING;
+        }
+        return numberStates[slot] = state;
+    }
+
+    private byte loadString(int slot) {
+        String name = schema.stringName(slot);
+        Object value = record.get(name);
+        byte state;
+        if (value != null) {
+            codes[slot] = StringDictionary.lookup(value.toString());
+            state = PRESENT;
+        } else {
+            state = record.containsKey(name) ? NULL : MISSING;
+        }
+        return stringStates[slot] = state;
+    }
+
+    // Whether the record had the attribute at all, null or not - the interpreter's containsKey check
+    boolean contains(String variable) {
+        int slot = schema.slot(variable);
+        if (slot < 0) return false;
+        if (schema.isNumeric(variable)) {
+            hasNumber(slot);
+            return numberStates[slot] != MISSING;
+        }
+        hasString(slot);
+        return stringStates[slot] != MISSING;
+    }
+
+    private static RuntimeException error(String variable, byte state) {
+        switch (state) {
+            case MISSING:
+                return new InvalidConditionException("Variable '" + variable + "' not found in context");
+            case NULL:
+                return new InvalidConditionException("Variable '" + variable + "' is null");
+            default:
+                return new InvalidConditionException("Variable '" + variable + "' must be a number");
+        }
+    }
+}
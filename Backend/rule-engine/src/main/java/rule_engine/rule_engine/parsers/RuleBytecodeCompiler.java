@@ -0,0 +1,159 @@
+package rule_engine.rule_engine.parsers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+// Second tier for hot rules: turns a compiled rule into one JVM class whose evaluate()
+// is a straight line of comparisons and jumps, so the JIT can inline the whole rule
+// instead of bouncing through a virtual call per node.
+// Anything we don't know how to emit (invalid conditions etc.) is called through as a regular
+// CompiledNode, and if generation fails altogether the caller just keeps the interpreted rule.
+@Slf4j
+public class RuleBytecodeCompiler {
+
+    private static final String CONTEXT = Type.getInternalName(EvaluationContext.class);
+    private static final String NODE = Type.getInternalName(CompiledNode.class);
+    private static final String NODE_ARRAY = "[L" + NODE + ";";
+    private static final String EVALUATE = "(L" + CONTEXT + ";)Z";
+
+    // Hidden classes have to live in the package of the lookup that defines them,
+    // which is what lets them extend our package-private CompiledNode
+    private static final String CLASS_NAME = RuleBytecodeCompiler.class.getPackageName().replace('.', '/') + "/GeneratedRule";
+
+    private static final MethodHandles.Lookup LOOKUP_CONTEXT = MethodHandles.lookup();
+
+    public static CompiledRule generate(CompiledRule rule) {
+        if (rule.isBytecode()) return rule;
+        try {
+            return new CompiledRule(rule.getRuleId(), rule.getAst(), defineClass(rule.root()), rule.root(), rule.getWeight());
+        } catch (Throwable e) {
+            // Too big for one method, verifier unhappy, whatever - the interpreter still works
+            log.warn("Falling back to interpreter, bytecode generation failed: {}", e.toString());
+            return rule;
+        }
+    }
+
+    private static CompiledNode defineClass(CompiledNode root) throws Throwable {
+        List<CompiledNode> fallbacks = new ArrayList<>();
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, NODE, null);
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "fallbacks", NODE_ARRAY, null, null).visitEnd();
+
+        MethodVisitor init = cw.visitMethod(0, "<init>", "(" + NODE_ARRAY + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, NODE, "<init>", "()V", false);
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitVarInsn(Opcodes.ALOAD, 1);
+        init.visitFieldInsn(Opcodes.PUTFIELD, CLASS_NAME, "fallbacks", NODE_ARRAY);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(0, "evaluate", EVALUATE, null, null);
+        mv.visitCode();
+        Label isFalse = new Label();
+        emit(mv, root, isFalse, false, fallbacks);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(isFalse);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        MethodHandles.Lookup hidden = LOOKUP_CONTEXT.defineHiddenClass(cw.toByteArray(), true);
+        MethodHandle constructor = hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class, CompiledNode[].class));
+        return (CompiledNode) constructor.invoke(fallbacks.toArray(new CompiledNode[0]));
+    }
+
+    // Classic "jumping code": emits node so that control goes to target when the node's value
+    // equals jumpIf, and falls through otherwise. AND/OR short-circuit just becomes jumps.
+    private static void emit(MethodVisitor mv, CompiledNode node, Label target, boolean jumpIf, List<CompiledNode> fallbacks) {
+        if (node instanceof AndNode) {
+            CompiledNode[] children = ((AndNode) node).children;
+            if (!jumpIf) {
+                for (CompiledNode child : children) emit(mv, child, target, false, fallbacks);
+            } else {
+                Label done = new Label();
+                for (int i = 0; i < children.length - 1; i++) emit(mv, children[i], done, false, fallbacks);
+                emit(mv, children[children.length - 1], target, true, fallbacks);
+                mv.visitLabel(done);
+            }
+        } else if (node instanceof OrNode) {
+            CompiledNode[] children = ((OrNode) node).children;
+            if (jumpIf) {
+                for (CompiledNode child : children) emit(mv, child, target, true, fallbacks);
+            } else {
+                Label done = new Label();
+                for (int i = 0; i < children.length - 1; i++) emit(mv, children[i], done, true, fallbacks);
+                emit(mv, children[children.length - 1], target, false, fallbacks);
+                mv.visitLabel(done);
+            }
+        } else if (node instanceof ConstantNode) {
+            if (((ConstantNode) node).value == jumpIf) {
+                mv.visitJumpInsn(Opcodes.GOTO, target);
+            }
+        } else if (node instanceof NumericComparison) {
+            emitNumeric(mv, (NumericComparison) node, target, jumpIf);
+        } else if (node instanceof StringComparison) {
+            // Dictionary codes, so it's an int compare
+            StringComparison comparison = (StringComparison) node;
+            boolean equals = node instanceof StringEquals;
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitLdcInsn(comparison.slot);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CONTEXT, "code", "(I)I", false);
+            mv.visitLdcInsn(comparison.code);
+            mv.visitJumpInsn(equals == jumpIf ? Opcodes.IF_ICMPEQ : Opcodes.IF_ICMPNE, target);
+        } else {
+            // Call through to the interpreted node
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CLASS_NAME, "fallbacks", NODE_ARRAY);
+            mv.visitLdcInsn(fallbacks.size());
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, NODE, "evaluate", EVALUATE, false);
+            mv.visitJumpInsn(jumpIf ? Opcodes.IFNE : Opcodes.IFEQ, target);
+            fallbacks.add(node);
+        }
+    }
+
+    // Same instruction choice javac makes, so NaN compares false everywhere except !=
+    private static void emitNumeric(MethodVisitor mv, NumericComparison node, Label target, boolean jumpIf) {
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitLdcInsn(node.slot);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CONTEXT, "number", "(I)D", false);
+        mv.visitLdcInsn(node.constant);
+
+        int compare;
+        int whenTrue;
+        int whenFalse;
+        if (node instanceof GreaterThan) {
+            compare = Opcodes.DCMPL; whenTrue = Opcodes.IFGT; whenFalse = Opcodes.IFLE;
+        } else if (node instanceof GreaterOrEqual) {
+            compare = Opcodes.DCMPL; whenTrue = Opcodes.IFGE; whenFalse = Opcodes.IFLT;
+        } else if (node instanceof LessThan) {
+            compare = Opcodes.DCMPG; whenTrue = Opcodes.IFLT; whenFalse = Opcodes.IFGE;
+        } else if (node instanceof LessOrEqual) {
+            compare = Opcodes.DCMPG; whenTrue = Opcodes.IFLE; whenFalse = Opcodes.IFGT;
+        } else if (node instanceof NumericEquals) {
+            compare = Opcodes.DCMPL; whenTrue = Opcodes.IFEQ; whenFalse = Opcodes.IFNE;
+        } else {
+            compare = Opcodes.DCMPL; whenTrue = Opcodes.IFNE; whenFalse = Opcodes.IFEQ;
+        }
+        mv.visitInsn(compare);
+        mv.visitJumpInsn(jumpIf ? whenTrue : whenFalse, target);
+    }
+}
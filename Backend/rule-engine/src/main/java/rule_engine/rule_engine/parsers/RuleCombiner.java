@@ -1,10 +1,8 @@
 package rule_engine.rule_engine.parsers;
 
-import lombok.Getter;
+import rule_engine.rule_engine.models.Node;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 class InvalidConditionException extends RuntimeException {
     public InvalidConditionException(String message) {
@@ -18,288 +16,258 @@ class InvalidRuleException extends RuntimeException {
     }
 }
 
-// This is where we break down each condition
-class Condition {
-    @Getter
-    String variable;
-    String operator;
-    String value;
-
-    // Our Catalog
-    private static final Map<String, List<String>> VALID_OPERATORS = new HashMap<String, List<String>>() {{
-        put("age", Arrays.asList(">", "<", "=", ">=", "<=", "!="));
-        put("salary", Arrays.asList(">", "<", "=", ">=", "<="));
-        put("experience", Arrays.asList(">", "<", "=", ">=", "<="));
-        put("department", Arrays.asList("=", "!="));
-        put("name", Arrays.asList("=", "!="));
-        put("email", Arrays.asList("=", "!="));
-    }};
-
-    public Condition(String condition) {
-        if (condition.isEmpty()) {
-            throw new InvalidConditionException("Condition cannot be empty.");
-        }
-
-        // This regex is a pain, but it works
-        Pattern pattern = Pattern.compile("(\\w+)\\s*(!=|>|<|=)\\s*(['\"]?)(.*?)\\3");
-        Matcher matcher = pattern.matcher(condition);
-
-        if (matcher.matches()) {
-            this.variable = matcher.group(1).trim();
-            this.operator = matcher.group(2);
-            this.value = matcher.group(4).trim().replace("'", "").replace("\"", ""); // Get rid of quotes
+//combine all the rules
+//
+// Works on parsed ASTs all the way through and hands back the combined AST, so nothing gets printed
+// and parsed again. Every step is a hash lookup per condition, no all-pairs comparisons:
+//  1. each input is parsed and broken into its innermost groups - AND/OR nodes whose operands are all
+//     conditions, or a lone condition (what used to be the innermost brackets of the rule string)
+//  2. groups are bucketed by the set of attributes they use and duplicates are dropped
+//  3. a bucket is ORed together if every group has the same shape as the first one and rules out the
+//     first one on some condition (age > 30 vs age < 25, department = Sales vs department = HR);
+//     otherwise only the first group of the bucket is kept
+//  4. the buckets are ANDed together
+//  5. equality chains on one attribute are folded into a set: department = 'HR' OR department = 'IT' OR
+//     department = 'Sales' -> department IN ('HR', 'IT', 'Sales')
+public class RuleCombiner {
 
-            validateVariable(variable);
-            validateOperator(variable, operator);
-        } else {
-            throw new InvalidConditionException("Invalid condition format: " + condition);
+    // Splits "rule1,rule2" on the commas between rules, leaving the ones in IN (...) lists and quotes alone
+    public static List<String> splitRuleList(String ruleList) {
+        List<String> rules = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < ruleList.length(); i++) {
+            char c = ruleList.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth <= 0) {
+                rules.add(ruleList.substring(start, i));
+                start = i + 1;
+            }
         }
+        rules.add(ruleList.substring(start));
+        return rules;
     }
 
-    // Make sure we're not using some made-up variable
-    private void validateVariable(String variable) {
-        if (!VALID_OPERATORS.containsKey(variable)) {
-            throw new InvalidConditionException("Invalid variable '" + variable + "'. Did you mean something else?");
-        }
+    public static String combineRules(List<String> ruleStrings) {
+        return RuleParser.toRuleString(combine(ruleStrings));
     }
 
-    // Check if we're using the right operator for this variable
-    private void validateOperator(String variable, String operator) {
-        List<String> validOperators = VALID_OPERATORS.get(variable);
-        if (validOperators == null || !validOperators.contains(operator)) {
-            throw new InvalidConditionException("Invalid operator '" + operator + "' for variable '" + variable + "'. Check the docs for valid operators.");
+    public static Node combine(List<String> ruleStrings) {
+        // First, let's break down any complex rules
+        List<Group> groups = new ArrayList<>();
+        for (String ruleString : ruleStrings) {
+            collectGroups(RuleParser.parseExpression(ruleString), groups);
         }
-    }
 
-    // Figure out if we're dealing with a number
-    public boolean isNumeric() {
-        try {
-            Double.parseDouble(value);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+        // Group similar rules together; LinkedHashSet drops exact duplicates and keeps the input order
+        Map<String, LinkedHashSet<Group>> buckets = new LinkedHashMap<>();
+        for (Group group : groups) {
+            buckets.computeIfAbsent(group.signature, k -> new LinkedHashSet<>()).add(group);
         }
-    }
-
-    // Check if this condition contradicts another one
-    public boolean isMutuallyExclusive(Condition other) {
-        if (!this.variable.equals(other.variable)) return false;
-
-        if (this.isNumeric() && other.isNumeric()) {
-            double val1 = Double.parseDouble(this.value);
-            double val2 = Double.parseDouble(other.value);
 
-            if (this.operator.equals(">") && other.operator.equals("<")) {
-                return val1 >= val2;
-            } else if (this.operator.equals("<") && other.operator.equals(">")) {
-                return val2 >= val1;
+        // Decide which buckets to combine with OR
+        List<Node> combined = new ArrayList<>();
+        for (LinkedHashSet<Group> bucket : buckets.values()) {
+            List<Group> members = new ArrayList<>(bucket);
+            if (members.size() > 1 && shouldCombineWithOr(members)) {
+                List<Node> operands = new ArrayList<>();
+                for (Group member : members) operands.add(member.node);
+                combined.add(Node.join("OR", operands));
+            } else {
+                combined.add(members.get(0).node);
             }
         }
 
-        if (this.operator.equals("=") && other.operator.equals("=")) {
-            return !this.value.equals(other.value);
+        // Final step: combine everything with AND
+        if (combined.isEmpty()) {
+            throw new InvalidRuleException("No rules to combine");
         }
-
-        return false;
-    }
-
-    @Override
-    public String toString() {
-        String displayValue = isNumeric() ? value : "'" + value + "'";
-        return variable + " " + operator + " " + displayValue;
+        return RuleOptimizer.foldEqualityChains(combined.size() == 1 ? combined.get(0) : Node.join("AND", combined));
     }
-}
-
-// This is where we put conditions together into a rule
-class Rule {
-    List<Condition> conditions;
-    String operator;
-
-    // If it's not in this set then we don't want it
-    private static final Set<String> VALID_ATTRIBUTES = new HashSet<>(Arrays.asList("age", "department", "salary", "experience", "name", "email"));
 
-    public Rule(String ruleStr) {
-        conditions = new ArrayList<>();
-
-        ruleStr = ruleStr.trim();
-        if (ruleStr.startsWith("(") && ruleStr.endsWith(")")) {
-            ruleStr = ruleStr.substring(1, ruleStr.length() - 1);
+    private static void collectGroups(Node node, List<Group> out) {
+        if (node == null) return;
+        if (!"operator".equals(node.type)) {
+            out.add(new Group(node, "SINGLE", List.of(node)));
+            return;
         }
-
-        // Figure out what kind of rule we're dealing with
-        if (ruleStr.contains("AND")) {
-            operator = "AND";
-            String[] parts = ruleStr.split("AND");
-            for (String part : parts) {
-                addCondition(part.trim());
-            }
-        } else if (ruleStr.contains("OR")) {
-            operator = "OR";
-            String[] parts = ruleStr.split("OR");
-            for (String part : parts) {
-                addCondition(part.trim());
+        List<Node> operands = node.operands();
+        boolean allConditions = true;
+        for (Node operand : operands) {
+            if (operand == null || "operator".equals(operand.type)) {
+                allConditions = false;
+                break;
             }
+        }
+        if (allConditions) {
+            out.add(new Group(node, node.operator, operands));
         } else {
-            operator = "SINGLE";
-            addCondition(ruleStr);
+            for (Node operand : operands) collectGroups(operand, out);
         }
     }
 
-    private void addCondition(String conditionStr) {
-        Condition condition = new Condition(conditionStr);
-        validateAttribute(condition.getVariable());
-        conditions.add(condition);
-    }
-
-    // Make sure we're only using attributes we know about
-    private void validateAttribute(String variable) {
-        if (!VALID_ATTRIBUTES.contains(variable)) {
-            throw new InvalidRuleException("Invalid attribute in rule: " + variable + ". Stick to the ones we know.");
+    // Every other group needs the first one's shape and a condition that contradicts one of the first one's
+    private static boolean shouldCombineWithOr(List<Group> bucket) {
+        Group first = bucket.get(0);
+        Map<String, Bounds> index = new HashMap<>();
+        for (Condition condition : first.conditions) {
+            index.computeIfAbsent(condition.variable, k -> new Bounds()).add(condition);
         }
-    }
 
-    public Set<String> getVariables() {
-        Set<String> vars = new HashSet<>();
-        for (Condition cond : conditions) {
-            vars.add(cond.getVariable());
+        for (int i = 1; i < bucket.size(); i++) {
+            Group current = bucket.get(i);
+            if (!first.operator.equals(current.operator) || first.conditions.size() != current.conditions.size()) {
+                return false;
+            }
+            boolean foundMutuallyExclusive = false;
+            for (Condition condition : current.conditions) {
+                Bounds bounds = index.get(condition.variable);
+                if (bounds != null && bounds.excludes(condition)) {
+                    foundMutuallyExclusive = true;
+                    break;
+                }
+            }
+            if (!foundMutuallyExclusive) return false;
         }
-        return vars;
+        return true;
     }
 
-    // Check if this rule looks like another one
-    public boolean hasSimilarStructure(Rule other) {
-        return this.operator.equals(other.operator) &&
-                this.conditions.size() == other.conditions.size();
-    }
+    // Innermost AND/OR group (or a single condition) with the attribute signature we bucket on
+    private static class Group {
+        final Node node;
+        final String operator;
+        final List<Condition> conditions = new ArrayList<>();
+        final String signature;
+
+        Group(Node node, String operator, List<Node> operands) {
+            this.node = node;
+            this.operator = operator;
+            Set<String> variables = new TreeSet<>();
+            for (Node operand : operands) {
+                Condition condition = new Condition(operand);
+                conditions.add(condition);
+                variables.add(condition.variable);
+            }
+            this.signature = String.join(",", variables);
+        }
 
-    @Override
-    public String toString() {
-        if (conditions.size() == 1) {
-            return conditions.get(0).toString();
+        // Same tree = same group, so duplicates collapse in the bucket's LinkedHashSet
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Group && node.equals(((Group) o).node);
         }
 
-        StringBuilder sb = new StringBuilder("(");
-        for (int i = 0; i < conditions.size(); i++) {
-            sb.append(conditions.get(i).toString());
-            if (i < conditions.size() - 1) {
-                sb.append(" ").append(operator).append(" ");
-            }
+        @Override
+        public int hashCode() {
+            return node.hashCode();
         }
-        sb.append(")");
-        return sb.toString();
     }
-}
 
-//combine all the rules
-public class RuleCombiner {
-
-    public static String combineRules(List<String> ruleStrings) {
-        // First, let's break down any complex rules
-        ruleStrings = new ArrayList<>(splitConditions(ruleStrings));
-        List<Rule> rules = new ArrayList<>();
-        for (String ruleString : ruleStrings) {
-            rules.add(new Rule(ruleString));
+    // This is where we break down each condition - split once, number parsed once
+    private static class Condition {
+        final String variable;
+        final String operator;
+        final String value;
+        final double number;
+        // Equality keys of an IN / NOT IN list, null for other conditions
+        final Set<String> values;
+
+        Condition(Node node) {
+            if (node.isMembership()) {
+                this.variable = node.value;
+                this.operator = node.operator;
+                this.value = null;
+                this.number = Double.NaN;
+                this.values = new HashSet<>();
+                for (String literal : node.getLiterals()) values.add(equalityKey(literal, parseNumber(literal)));
+                return;
+            }
+            this.values = null;
+            int idx = node.value == null ? -1 : node.value.indexOf(node.operator);
+            if (idx < 0) {
+                throw new InvalidConditionException("Invalid condition format: " + node.value);
+            }
+            this.variable = node.value.substring(0, idx).trim();
+            this.operator = node.operator;
+            this.value = node.value.substring(idx + node.operator.length()).trim();
+            this.number = parseNumber(value);
         }
 
-        // Group similar rules together
-        Map<Set<String>, List<Rule>> variableGroups = new HashMap<>();
-        for (Rule rule : rules) {
-            Set<String> vars = rule.getVariables();
+        boolean isNumeric() {
+            return !Double.isNaN(number);
+        }
 
-            if (!variableGroups.containsKey(vars)) {
-                variableGroups.put(vars, createNewList());
-            }
-            variableGroups.get(vars).add(rule);
+        // Numbers compare by value so 30 and 30.0 are the same thing
+        String equalityKey() {
+            return equalityKey(value, number);
         }
 
-        List<String> combinedGroups = new ArrayList<>();
+        private static String equalityKey(String value, double number) {
+            return Double.isNaN(number) ? value : Double.toString(number == 0 ? 0.0 : number);
+        }
 
-        // Decide which groups to combine with OR
-        for (List<Rule> group : variableGroups.values()) {
-            if (group.size() > 1 && shouldCombineWithOr(group)) {
-                combinedGroups.add(combineGroupWithOr(group));
-            } else {
-                combinedGroups.add(group.get(0).toString());
+        private static double parseNumber(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
             }
         }
-
-        // Final step: combine everything with AND
-        return combineWithOperator(combinedGroups, "AND");
     }
 
-    private static List<Rule> createNewList() {
-        return new ArrayList<>();
-    }
-
-    // This method decides if we should use OR to combine rules
-    private static boolean shouldCombineWithOr(List<Rule> group) {
-        Rule first = group.get(0);
-        for (int i = 1; i < group.size(); i++) {
-            Rule current = group.get(i);
-            if (!first.hasSimilarStructure(current)) {
-                return false;
+    // What the first group of a bucket says about one attribute, boiled down to what exclusivity needs:
+    // x > a and x < b can't both hold when a >= b, x = a and x = b can't when a != b,
+    // and x = a can't hold alongside x IN (...) when a isn't in the list
+    private static class Bounds {
+        double maxGreaterThan = Double.NEGATIVE_INFINITY;
+        double minLessThan = Double.POSITIVE_INFINITY;
+        final Set<String> equalTo = new HashSet<>();
+        final List<Set<String>> in = new ArrayList<>();
+
+        void add(Condition condition) {
+            if (">".equals(condition.operator) && condition.isNumeric()) {
+                maxGreaterThan = Math.max(maxGreaterThan, condition.number);
+            } else if ("<".equals(condition.operator) && condition.isNumeric()) {
+                minLessThan = Math.min(minLessThan, condition.number);
+            } else if ("=".equals(condition.operator)) {
+                equalTo.add(condition.equalityKey());
+            } else if ("IN".equals(condition.operator)) {
+                in.add(condition.values);
             }
+        }
 
-            boolean foundMutuallyExclusive = false;
-            for (Condition c1 : first.conditions) {
-                for (Condition c2 : current.conditions) {
-                    if (c1.isMutuallyExclusive(c2)) {
-                        foundMutuallyExclusive = true;
-                        break;
-                    }
+        boolean excludes(Condition condition) {
+            if ("=".equals(condition.operator)) return excludesValue(condition.equalityKey());
+            if ("IN".equals(condition.operator)) {
+                // Every value of the list has to be ruled out
+                for (String key : condition.values) {
+                    if (!excludesValue(key)) return false;
                 }
-                if (foundMutuallyExclusive) break;
+                return true;
             }
-
-            if (!foundMutuallyExclusive) return false;
-        }
-        return true;
-    }
-
-    private static String combineGroupWithOr(List<Rule> group) {
-        return combineWithOperator(combineRulesToString(group), "OR");
-    }
-
-    private static List<String> combineRulesToString(List<Rule> group) {
-        List<String> expressions = new ArrayList<>();
-        for (Rule rule : group) {
-            expressions.add(rule.toString());
-        }
-        return expressions;
-    }
-
-    // Break down complex conditions into simpler ones
-    public static List<String> splitConditions(List<String> inputList) {
-        List<String> result = new ArrayList<>();
-        Pattern pattern = Pattern.compile("\\(([^()]+)\\)");
-
-        for (String inputString : inputList) {
-            Matcher matcher = pattern.matcher(inputString);
-
-            while (matcher.find()) {
-                String condition = matcher.group(1);
-                // Get rid of extra parentheses
-                condition = condition.replaceAll("^\\(|\\)$", "").trim();
-                result.add("(" + condition + ")");
+            if (!condition.isNumeric()) return false;
+            switch (condition.operator) {
+                case "<": return maxGreaterThan >= condition.number;
+                case ">": return condition.number >= minLessThan;
+                default: return false;
             }
         }
 
-        return result;
-    }
-
-    // Put it all together with the right operator
-    private static String combineWithOperator(List<String> expressions, String operator) {
-        if (expressions.size() == 1) return expressions.get(0);
-
-        StringBuilder result = new StringBuilder("(");
-        for (int i = 0; i < expressions.size(); i++) {
-            result.append(expressions.get(i));
-            if (i < expressions.size() - 1) {
-                result.append(" ").append(operator).append(" ");
+        private boolean excludesValue(String key) {
+            if (equalTo.size() > 1 || (equalTo.size() == 1 && !equalTo.contains(key))) return true;
+            for (Set<String> values : in) {
+                if (!values.contains(key)) return true;
             }
+            return false;
         }
-        result.append(")");
-        return result.toString();
     }
 
     // Uncomment this to test the RuleCombiner
@@ -322,4 +290,4 @@ public class RuleCombiner {
         }
     }
     */
-}
\ No newline at end of file
+}
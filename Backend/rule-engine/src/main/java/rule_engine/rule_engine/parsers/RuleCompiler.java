@@ -0,0 +1,556 @@
+package rule_engine.rule_engine.parsers;
+
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+
+// Base of the compiled evaluator graph. Everything below is built once per rule and never
+// restructured in place (the optional profiling counters are the only mutable state),
+// so evaluation is just a walk over plain objects reading a slot-bound EvaluationContext.
+abstract class CompiledNode {
+    abstract boolean evaluate(EvaluationContext context);
+}
+
+// Per-child counters an AND/OR node keeps when the rule is compiled with profiling on.
+// Only one evaluation in SAMPLE_EVERY is timed, and the counters are plain fields bumped without
+// synchronization - they feed a heuristic, so an occasional lost update doesn't matter.
+final class ChildStats {
+    private static final int SAMPLE_EVERY = 64;
+    // A condition takes a few ns, so one GC pause or safepoint landing in a sample would swamp the
+    // average and drive a bad reorder; anything longer than this is counted as this
+    private static final long MAX_SAMPLE_NANOS = 10_000;
+
+    private int calls;
+    final long[] evaluations;
+    final long[] trues;
+    final long[] nanos;
+
+    ChildStats(int children) {
+        evaluations = new long[children];
+        trues = new long[children];
+        nanos = new long[children];
+    }
+
+    boolean sample() {
+        return ++calls % SAMPLE_EVERY == 0;
+    }
+
+    boolean record(int child, boolean result, long elapsedNanos) {
+        evaluations[child]++;
+        if (result) trues[child]++;
+        nanos[child] += Math.min(elapsedNanos, MAX_SAMPLE_NANOS);
+        return result;
+    }
+}
+
+// AND/OR chains get flattened, so "a AND b AND c" is one node with three children
+// even when the AST nests them (older stored rules are right-leaning binary chains)
+final class AndNode extends CompiledNode {
+    final CompiledNode[] children;
+    final ChildStats stats;
+
+    AndNode(CompiledNode[] children, ChildStats stats) {
+        this.children = children;
+        this.stats = stats;
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        if (stats != null && stats.sample()) {
+            for (int i = 0; i < children.length; i++) {
+                long start = System.nanoTime();
+                boolean result = children[i].evaluate(context);
+                if (!stats.record(i, result, System.nanoTime() - start)) return false;
+            }
+            return true;
+        }
+        for (CompiledNode child : children) {
+            if (!child.evaluate(context)) return false;
+        }
+        return true;
+    }
+}
+
+final class OrNode extends CompiledNode {
+    final CompiledNode[] children;
+    final ChildStats stats;
+
+    OrNode(CompiledNode[] children, ChildStats stats) {
+        this.children = children;
+        this.stats = stats;
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        if (stats != null && stats.sample()) {
+            for (int i = 0; i < children.length; i++) {
+                long start = System.nanoTime();
+                boolean result = children[i].evaluate(context);
+                if (stats.record(i, result, System.nanoTime() - start)) return true;
+            }
+            return false;
+        }
+        for (CompiledNode child : children) {
+            if (child.evaluate(context)) return true;
+        }
+        return false;
+    }
+}
+
+// What AdaptiveReorderer puts in place of an AND/OR whose children it moved. The reordered node only
+// runs when every attribute the children read has a usable value: then no child can throw, AND/OR
+// commute, and the answer can't differ from the written order. Otherwise (a missing attribute, a string
+// where a number should be) the written order runs, so the record fails, or short-circuits past the
+// failure, exactly as it did before the reorder. The check is one slot lookup per attribute.
+final class ReorderedNode extends CompiledNode {
+    final CompiledNode reordered;
+    final CompiledNode original;
+    // One condition per attribute read anywhere below, for its present() check
+    final ComparisonNode[] required;
+
+    ReorderedNode(CompiledNode reordered, CompiledNode original, ComparisonNode[] required) {
+        this.reordered = reordered;
+        this.original = original;
+        this.required = required;
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        for (ComparisonNode condition : required) {
+            if (!condition.present(context)) return original.evaluate(context);
+        }
+        return reordered.evaluate(context);
+    }
+}
+
+final class ConstantNode extends CompiledNode {
+    static final ConstantNode FALSE = new ConstantNode(false);
+    static final ConstantNode TRUE = new ConstantNode(true);
+
+    final boolean value;
+
+    private ConstantNode(boolean value) {
+        this.value = value;
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return value;
+    }
+}
+
+// Stands in for something the interpreter would only complain about when it gets there
+// (bad numeric literal, unknown operator...). We keep the error lazy so short-circuiting
+// behaves exactly like RuleParser.evaluate.
+final class InvalidNode extends CompiledNode {
+    final String variable;
+    final RuntimeException error;
+
+    InvalidNode(RuntimeException error) {
+        this(null, error);
+    }
+
+    // The interpreter checks the variable is in the context before it looks at the value,
+    // so a missing variable wins over a bad literal
+    InvalidNode(String variable, RuntimeException error) {
+        this.variable = variable;
+        this.error = error;
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        if (variable != null && !context.contains(variable)) {
+            throw new InvalidConditionException("Variable '" + variable + "' not found in context");
+        }
+        // Fresh exception each time so stack traces point at the evaluation, not the compile
+        if (error instanceof InvalidRuleException) {
+            throw new InvalidRuleException(error.getMessage());
+        }
+        throw new InvalidConditionException(error.getMessage());
+    }
+}
+
+abstract class ComparisonNode extends CompiledNode {
+    final String variable;
+    // Index into the context's numbers for numeric comparisons, its string codes for string ones
+    final int slot;
+
+    ComparisonNode(String variable, int slot) {
+        this.variable = variable;
+        this.slot = slot;
+    }
+
+    // Whether the record has a usable value for the attribute, i.e. evaluate() won't throw
+    abstract boolean present(EvaluationContext context);
+}
+
+abstract class NumericComparison extends ComparisonNode {
+    final double constant;
+
+    NumericComparison(String variable, int slot, double constant) {
+        super(variable, slot);
+        this.constant = constant;
+    }
+
+    @Override
+    final boolean present(EvaluationContext context) {
+        return context.hasNumber(slot);
+    }
+}
+
+final class GreaterThan extends NumericComparison {
+    GreaterThan(String variable, int slot, double constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.number(slot) > constant;
+    }
+}
+
+final class LessThan extends NumericComparison {
+    LessThan(String variable, int slot, double constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.number(slot) < constant;
+    }
+}
+
+final class GreaterOrEqual extends NumericComparison {
+    GreaterOrEqual(String variable, int slot, double constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.number(slot) >= constant;
+    }
+}
+
+final class LessOrEqual extends NumericComparison {
+    LessOrEqual(String variable, int slot, double constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.number(slot) <= constant;
+    }
+}
+
+final class NumericEquals extends NumericComparison {
+    NumericEquals(String variable, int slot, double constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.number(slot) == constant;
+    }
+}
+
+final class NumericNotEquals extends NumericComparison {
+    NumericNotEquals(String variable, int slot, double constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.number(slot) != constant;
+    }
+}
+
+// The literal is resolved to its StringDictionary code at compile time, so evaluation is an int compare
+abstract class StringComparison extends ComparisonNode {
+    final String constant;
+    final int code;
+
+    StringComparison(String variable, int slot, String constant) {
+        super(variable, slot);
+        this.constant = constant;
+        this.code = StringDictionary.intern(constant);
+    }
+
+    @Override
+    final boolean present(EvaluationContext context) {
+        return context.hasString(slot);
+    }
+}
+
+final class StringEquals extends StringComparison {
+    StringEquals(String variable, int slot, String constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.code(slot) == code;
+    }
+}
+
+final class StringNotEquals extends StringComparison {
+    StringNotEquals(String variable, int slot, String constant) {
+        super(variable, slot, constant);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return context.code(slot) != code;
+    }
+}
+
+// variable IN (...) / NOT IN (...) over numbers: the values sorted into a double[] and binary searched.
+// Matches the interpreter's == on doubles: -0.0 and 0.0 are the same value and NaN is in no set.
+final class NumericIn extends ComparisonNode {
+    final double[] values;
+    final boolean negated;
+
+    NumericIn(String variable, int slot, double[] values, boolean negated) {
+        super(variable, slot);
+        this.values = Arrays.stream(values).filter(v -> !Double.isNaN(v)).map(v -> v + 0.0).sorted().distinct().toArray();
+        this.negated = negated;
+    }
+
+    @Override
+    boolean present(EvaluationContext context) {
+        return context.hasNumber(slot);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return contains(context.number(slot)) != negated;
+    }
+
+    boolean contains(double value) {
+        double[] values = this.values;
+        if (values.length == 0) return false;
+        int low = 0, high = values.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        // false for NaN, and true for -0.0 against a 0.0 in the set
+        return values[low] == value;
+    }
+}
+
+// variable IN (...) / NOT IN (...) over strings: the values' dictionary codes in an open-addressing int set,
+// so a lookup is a multiply, a mask and usually one array read
+final class StringIn extends ComparisonNode {
+    private static final int EMPTY = -1;
+
+    final List<String> constants;
+    final boolean negated;
+    private final int[] table;
+    private final int shift;
+
+    StringIn(String variable, int slot, List<String> constants, boolean negated) {
+        super(variable, slot);
+        this.constants = constants;
+        this.negated = negated;
+        // At most half full
+        int bits = 1;
+        while ((1 << bits) < constants.size() * 2) bits++;
+        table = new int[1 << bits];
+        shift = 32 - bits;
+        Arrays.fill(table, EMPTY);
+        for (String constant : constants) {
+            int code = StringDictionary.intern(constant);
+            int i = index(code);
+            while (table[i] != EMPTY && table[i] != code) i = (i + 1) & (table.length - 1);
+            table[i] = code;
+        }
+    }
+
+    private int index(int code) {
+        return (code * 0x9E3779B9) >>> shift;
+    }
+
+    @Override
+    boolean present(EvaluationContext context) {
+        return context.hasString(slot);
+    }
+
+    @Override
+    boolean evaluate(EvaluationContext context) {
+        return contains(context.code(slot)) != negated;
+    }
+
+    boolean contains(int code) {
+        // A value no rule mentions has no code and is in no set
+        if (code < 0) return false;
+        for (int i = index(code); ; i = (i + 1) & (table.length - 1)) {
+            int entry = table[i];
+            if (entry == code) return true;
+            if (entry == EMPTY) return false;
+        }
+    }
+}
+
+// Turns a stored AST into the evaluator graph above.
+// All the string splitting and number parsing RuleParser.evaluate does per call happens here, once.
+// Conditions are bound to AttributeSchema slots here, so the schema in force at compile time decides
+// where each one reads from.
+public class RuleCompiler {
+
+    public static CompiledRule compile(Node ast) {
+        return compile(null, ast);
+    }
+
+    public static CompiledRule compile(Long ruleId, Node ast) {
+        return compile(ruleId, ast, false);
+    }
+
+    // With profile on, AND/OR nodes sample per-child selectivity and cost for AdaptiveReorderer
+    public static CompiledRule compile(Long ruleId, Node ast, boolean profile) {
+        CompiledNode root = compileNode(ast, profile);
+        return new CompiledRule(ruleId, ast, root, countNodes(root));
+    }
+
+    static int countNodes(CompiledNode node) {
+        int count = 1;
+        if (node instanceof AndNode) {
+            for (CompiledNode child : ((AndNode) node).children) count += countNodes(child);
+        } else if (node instanceof OrNode) {
+            for (CompiledNode child : ((OrNode) node).children) count += countNodes(child);
+        } else if (node instanceof ReorderedNode) {
+            count += countNodes(((ReorderedNode) node).reordered);
+        }
+        return count;
+    }
+
+    static CompiledNode compileNode(Node node) {
+        return compileNode(node, false);
+    }
+
+    private static CompiledNode compileNode(Node node, boolean profile) {
+        if (node == null) return ConstantNode.FALSE;
+
+        if ("operator".equals(node.type)) {
+            if ("AND".equals(node.operator)) {
+                List<CompiledNode> children = new ArrayList<>();
+                flatten(node, "AND", children, profile);
+                return new AndNode(children.toArray(new CompiledNode[0]), profile ? new ChildStats(children.size()) : null);
+            }
+            if ("OR".equals(node.operator)) {
+                List<CompiledNode> children = new ArrayList<>();
+                flatten(node, "OR", children, profile);
+                return new OrNode(children.toArray(new CompiledNode[0]), profile ? new ChildStats(children.size()) : null);
+            }
+            return new InvalidNode(new InvalidRuleException("Unknown operator: " + node.operator));
+        }
+
+        if (node.isMembership()) {
+            return compileMembership(node);
+        }
+        if ("operand".equals(node.type)) {
+            return compileCondition(node);
+        }
+
+        // Left behind by RuleOptimizer when it folds a branch away
+        if ("constant".equals(node.type)) {
+            return Boolean.parseBoolean(node.value) ? ConstantNode.TRUE : ConstantNode.FALSE;
+        }
+
+        return ConstantNode.FALSE;
+    }
+
+    // Collects the operands of a chain of the same operator, left to right, so evaluation order is unchanged
+    private static void flatten(Node node, String operator, List<CompiledNode> out, boolean profile) {
+        for (Node child : node.operands()) {
+            if (child != null && "operator".equals(child.type) && operator.equals(child.operator)) {
+                flatten(child, operator, out, profile);
+            } else {
+                out.add(compileNode(child, profile));
+            }
+        }
+    }
+
+    private static CompiledNode compileCondition(Node node) {
+        String operator = node.operator;
+        int idx = node.value.indexOf(operator);
+        if (idx < 0) {
+            // Same thing the interpreter would trip over when it splits the value
+            return new InvalidNode(new InvalidConditionException("Invalid condition format: " + node.value));
+        }
+        String variable = node.value.substring(0, idx).trim();
+        String value = node.value.substring(idx + operator.length()).trim();
+        AttributeSchema schema = AttributeSchema.get();
+        int slot = schema.slot(variable);
+        if (slot < 0) {
+            // Only rules stored before the attribute was dropped from the schema get here
+            return new InvalidNode(new InvalidConditionException("Invalid attribute: " + variable));
+        }
+        boolean numericVariable = schema.isNumeric(variable);
+
+        switch (operator) {
+            case ">":
+            case "<":
+            case ">=":
+            case "<=":
+                if (!numericVariable) {
+                    return new InvalidNode(variable, new InvalidConditionException("Numeric operation not allowed for variable: " + variable));
+                }
+                return compileNumeric(operator, variable, slot, value);
+            case "=":
+            case "!=":
+                if (numericVariable) {
+                    return compileNumeric(operator, variable, slot, value);
+                }
+                return operator.equals("=") ? new StringEquals(variable, slot, value) : new StringNotEquals(variable, slot, value);
+            default:
+                return new InvalidNode(variable, new InvalidConditionException("Unsupported operator: " + operator));
+        }
+    }
+
+    private static CompiledNode compileMembership(Node node) {
+        String variable = node.value;
+        AttributeSchema schema = AttributeSchema.get();
+        int slot = schema.slot(variable);
+        if (slot < 0) {
+            return new InvalidNode(new InvalidConditionException("Invalid attribute: " + variable));
+        }
+        boolean negated;
+        switch (node.operator) {
+            case "IN": negated = false; break;
+            case "NOT IN": negated = true; break;
+            default: return new InvalidNode(variable, new InvalidConditionException("Unsupported operator: " + node.operator));
+        }
+        List<String> literals = node.getLiterals();
+        if (!schema.isNumeric(variable)) {
+            return new StringIn(variable, slot, literals, negated);
+        }
+        double[] values = new double[literals.size()];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                values[i] = Double.parseDouble(literals.get(i));
+            } catch (NumberFormatException | NullPointerException e) {
+                return new InvalidNode(variable, new InvalidConditionException("Invalid numeric value: " + literals.get(i)));
+            }
+        }
+        return new NumericIn(variable, slot, values, negated);
+    }
+
+    private static CompiledNode compileNumeric(String operator, String variable, int slot, String value) {
+        double constant;
+        try {
+            constant = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return new InvalidNode(variable, new InvalidConditionException("Invalid numeric value: " + value));
+        }
+
+        switch (operator) {
+            case ">": return new GreaterThan(variable, slot, constant);
+            case "<": return new LessThan(variable, slot, constant);
+            case ">=": return new GreaterOrEqual(variable, slot, constant);
+            case "<=": return new LessOrEqual(variable, slot, constant);
+            case "=": return new NumericEquals(variable, slot, constant);
+            default: return new NumericNotEquals(variable, slot, constant);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package rule_engine.rule_engine.parsers;
+
+import lombok.Getter;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+
+// Rete-style discrimination network over a whole rule set.
+// Every distinct condition (age>30, department=Sales...) shows up once no matter how many rules use it,
+// and identical AND/OR subtrees are shared too. Matching a record evaluates each condition once,
+// then each join once, so the cost follows the number of distinct nodes rather than the number of rules.
+public final class RuleNetwork {
+
+    // Three-valued so we can mimic the interpreter exactly: a rule whose evaluation would throw
+    // (missing variable, bad literal) doesn't match, but only if evaluation actually gets that far
+    static final byte FALSE = 0;
+    static final byte TRUE = 1;
+    static final byte ERROR = 2;
+
+    @Getter
+    private final long version;
+    private final CompiledNode[] conditions;
+    // Numeric comparisons live at the front of conditions and are answered by binary search
+    private final ThresholdIndex thresholdIndex;
+    // Joins are stored in creation order, which is post-order, so children always come first.
+    // A child reference >= 0 is a condition id, < 0 is ~joinId.
+    private final boolean[] joinIsAnd;
+    private final int[][] joinInputs;
+    private final int[] roots;
+    private final long[][] ruleIdsByRoot;
+
+    private RuleNetwork(long version, CompiledNode[] conditions, ThresholdIndex thresholdIndex, boolean[] joinIsAnd, int[][] joinInputs, int[] roots, long[][] ruleIdsByRoot) {
+        this.version = version;
+        this.conditions = conditions;
+        this.thresholdIndex = thresholdIndex;
+        this.joinIsAnd = joinIsAnd;
+        this.joinInputs = joinInputs;
+        this.roots = roots;
+        this.ruleIdsByRoot = ruleIdsByRoot;
+    }
+
+    public static RuleNetwork build(long version, Map<Long, Node> rules) {
+        Builder builder = new Builder();
+        Map<Integer, List<Long>> byRoot = new LinkedHashMap<>();
+        for (Map.Entry<Long, Node> rule : rules.entrySet()) {
+            int root = builder.add(rule.getValue());
+            byRoot.computeIfAbsent(root, k -> new ArrayList<>()).add(rule.getKey());
+        }
+
+        // Renumber conditions so the index can cover its groups with contiguous id ranges
+        int[] newIds = new int[builder.conditions.size()];
+        ThresholdIndex index = ThresholdIndex.build(builder.conditions, newIds);
+        CompiledNode[] conditions = new CompiledNode[newIds.length];
+        for (int id = 0; id < newIds.length; id++) {
+            conditions[newIds[id]] = builder.conditions.get(id);
+        }
+
+        int[] roots = new int[byRoot.size()];
+        long[][] ruleIds = new long[byRoot.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, List<Long>> entry : byRoot.entrySet()) {
+            roots[i] = remap(entry.getKey(), newIds);
+            ruleIds[i] = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            i++;
+        }
+
+        boolean[] isAnd = new boolean[builder.joins.size()];
+        int[][] inputs = new int[builder.joins.size()][];
+        for (int j = 0; j < inputs.length; j++) {
+            isAnd[j] = builder.joins.get(j).get(0) == 1;
+            inputs[j] = builder.joins.get(j).subList(1, builder.joins.get(j).size()).stream().mapToInt(ref -> remap(ref, newIds)).toArray();
+        }
+        return new RuleNetwork(version, conditions, index, isAnd, inputs, roots, ruleIds);
+    }
+
+    private static int remap(int ref, int[] newConditionIds) {
+        return ref >= 0 ? newConditionIds[ref] : ref;
+    }
+
+    // Ids of every rule that evaluates to true for this record, ascending
+    public List<Long> match(Map<String, Object> record) {
+        try (EvaluationContext context = EvaluationContext.forThread(record)) {
+            return match(context);
+        }
+    }
+
+    public List<Long> match(EvaluationContext context) {
+        byte[] conditionValues = new byte[conditions.length];
+        thresholdIndex.evaluate(context, conditionValues);
+        for (int i = thresholdIndex.getIndexedCount(); i < conditions.length; i++) {
+            conditionValues[i] = evaluateCondition(conditions[i], context);
+        }
+
+        byte[] joinValues = new byte[joinInputs.length];
+        for (int j = 0; j < joinInputs.length; j++) {
+            joinValues[j] = joinIsAnd[j]
+                    ? and(joinInputs[j], conditionValues, joinValues)
+                    : or(joinInputs[j], conditionValues, joinValues);
+        }
+
+        List<Long> matches = new ArrayList<>();
+        for (int r = 0; r < roots.length; r++) {
+            if (value(roots[r], conditionValues, joinValues) == TRUE) {
+                for (long id : ruleIdsByRoot[r]) matches.add(id);
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    public int getConditionCount() {
+        return conditions.length;
+    }
+
+    public int getIndexedConditionCount() {
+        return thresholdIndex.getIndexedCount();
+    }
+
+    public int getJoinCount() {
+        return joinInputs.length;
+    }
+
+    private static byte evaluateCondition(CompiledNode condition, EvaluationContext context) {
+        // Cheap check first - records missing an attribute are common and exceptions aren't cheap
+        if (condition instanceof ComparisonNode && !((ComparisonNode) condition).present(context)) {
+            return ERROR;
+        }
+        try {
+            return condition.evaluate(context) ? TRUE : FALSE;
+        } catch (RuntimeException e) {
+            return ERROR;
+        }
+    }
+
+    // Left to right with short-circuit, same as AndNode, so an error only counts if we'd have reached it
+    private static byte and(int[] inputs, byte[] conditionValues, byte[] joinValues) {
+        for (int input : inputs) {
+            byte v = value(input, conditionValues, joinValues);
+            if (v != TRUE) return v;
+        }
+        return TRUE;
+    }
+
+    private static byte or(int[] inputs, byte[] conditionValues, byte[] joinValues) {
+        for (int input : inputs) {
+            byte v = value(input, conditionValues, joinValues);
+            if (v != FALSE) return v;
+        }
+        return FALSE;
+    }
+
+    private static byte value(int ref, byte[] conditionValues, byte[] joinValues) {
+        return ref >= 0 ? conditionValues[ref] : joinValues[~ref];
+    }
+
+    private static class Builder {
+        final List<CompiledNode> conditions = new ArrayList<>();
+        final Map<String, Integer> conditionIds = new HashMap<>();
+        // Each join is [1 for AND / 0 for OR, child refs...]; the list doubles as its dedup key
+        final List<List<Integer>> joins = new ArrayList<>();
+        final Map<List<Integer>, Integer> joinIds = new HashMap<>();
+
+        int add(Node node) {
+            if (node != null && "operator".equals(node.type) && ("AND".equals(node.operator) || "OR".equals(node.operator))) {
+                List<Integer> key = new ArrayList<>();
+                key.add("AND".equals(node.operator) ? 1 : 0);
+                flatten(node, node.operator, key);
+                Integer existing = joinIds.get(key);
+                if (existing != null) return ~existing;
+                joins.add(key);
+                joinIds.put(key, joins.size() - 1);
+                return ~(joins.size() - 1);
+            }
+            return condition(node);
+        }
+
+        private void flatten(Node node, String operator, List<Integer> out) {
+            for (Node child : node.operands()) {
+                if (child != null && "operator".equals(child.type) && operator.equals(child.operator)) {
+                    flatten(child, operator, out);
+                } else {
+                    out.add(add(child));
+                }
+            }
+        }
+
+        private int condition(Node node) {
+            String key = node == null ? "null" : node.type + '\u0000' + node.operator + '\u0000' + node.value;
+            if (node != null && node.isMembership()) {
+                // Same values in any order are the same set
+                key += '\u0000' + String.join("\u0000", new TreeSet<>(node.getLiterals()));
+            }
+            Integer existing = conditionIds.get(key);
+            if (existing != null) return existing;
+            conditions.add(RuleCompiler.compileNode(node));
+            conditionIds.put(key, conditions.size() - 1);
+            return conditions.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package rule_engine.rule_engine.parsers;
+
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+
+// Simplifies an AST before it's stored, so we don't pay for redundant conditions on every evaluation.
+//  - nested AND-in-AND / OR-in-OR are flattened and repeated operands dropped
+//  - conditions on the same attribute are merged: age > 30 AND age > 40 -> age > 40,
+//    age > 50 AND age < 20 -> false, department = Sales AND department = HR -> false,
+//    age > 30 OR age <= 30 -> true, department != Sales OR department != HR -> true
+//  - constants fold away: AND drops true and collapses on false, OR the other way round
+//  - equality chains on one attribute become a set lookup: x = a OR x = b OR x = c -> x IN (a, b, c),
+//    x != a AND x != b AND x != c -> x NOT IN (a, b, c), and existing IN / NOT IN lists absorb them too
+// What's left keeps the author's order, we never move a condition in front of another - except that a
+// folded set sits where its first member was.
+//
+// The one thing that can change is error reporting. A record missing an attribute, or with a bad literal,
+// used to throw when evaluation reached that condition; if the condition is folded away it now gets the
+// folded result instead. Records that have what the rule asks for get exactly the same answer.
+// Numeric reasoning assumes real numbers - JSON can't carry NaN, which is the only value it'd be wrong for.
+public class RuleOptimizer {
+
+    public static Node optimize(Node node) {
+        if (node == null || !"operator".equals(node.type)) return node;
+        boolean and = "AND".equals(node.operator);
+        if (!and && !"OR".equals(node.operator)) return node;
+
+        List<Node> original = node.operands();
+        List<Node> operands = new ArrayList<>();
+        for (Node operand : original) {
+            Node optimized = optimize(operand);
+            if (optimized != null && "operator".equals(optimized.type) && node.operator.equals(optimized.operator)) {
+                operands.addAll(optimized.operands());
+            } else {
+                operands.add(optimized);
+            }
+        }
+
+        // Constants: true is the identity for AND and decides an OR, false the other way round
+        List<Node> kept = new ArrayList<>();
+        Set<Node> seen = new HashSet<>();
+        for (Node operand : operands) {
+            if (isConstant(operand)) {
+                if (Boolean.parseBoolean(operand.value) != and) return constant(!and);
+                continue;
+            }
+            if (seen.add(operand)) kept.add(operand);
+        }
+
+        // Same-attribute conditions
+        Map<String, List<Atom>> byAttribute = new LinkedHashMap<>();
+        for (Node operand : kept) {
+            Atom atom = Atom.of(operand);
+            if (atom != null) byAttribute.computeIfAbsent(atom.variable, k -> new ArrayList<>()).add(atom);
+        }
+        Set<Node> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Atom> atoms : byAttribute.values()) {
+            if (atoms.size() < 2) continue;
+            Set<Node> keep = and ? conjunction(atoms) : disjunction(atoms);
+            if (keep == null) return constant(!and);
+            for (Atom atom : atoms) {
+                if (!keep.contains(atom.node)) dropped.add(atom.node);
+            }
+        }
+        kept.removeIf(dropped::contains);
+        kept = foldMembership(kept, and);
+
+        if (kept.isEmpty()) return constant(and);
+        if (kept.size() == 1) return kept.get(0);
+        if (sameInstances(kept, original)) return node;
+        return Node.join(node.operator, kept);
+    }
+
+    // Only the set folding, for trees that have to stay printable as rule strings (RuleCombiner)
+    static Node foldEqualityChains(Node node) {
+        if (node == null || !"operator".equals(node.type)) return node;
+        if (!"AND".equals(node.operator) && !"OR".equals(node.operator)) return node;
+        boolean changed = false;
+        List<Node> operands = new ArrayList<>();
+        for (Node operand : node.operands()) {
+            Node folded = foldEqualityChains(operand);
+            changed |= folded != operand;
+            if (folded != null && "operator".equals(folded.type) && node.operator.equals(folded.operator)) {
+                operands.addAll(folded.operands());
+                changed = true;
+            } else {
+                operands.add(folded);
+            }
+        }
+        List<Node> kept = foldMembership(operands, "AND".equals(node.operator));
+        if (kept.size() == 1) return kept.get(0);
+        if (!changed && kept == operands) return node;
+        return Node.join(node.operator, kept);
+    }
+
+    // Below this many values a few compares beat the set lookup
+    static final int MIN_MEMBERSHIP_VALUES = 3;
+
+    // In an OR, the = conditions and IN lists on one attribute become one IN; in an AND, != and NOT IN become
+    // one NOT IN. Values are deduplicated by what equality means for the attribute.
+    private static List<Node> foldMembership(List<Node> operands, boolean and) {
+        String equality = and ? "!=" : "=";
+        String membership = and ? "NOT IN" : "IN";
+        Map<String, List<Node>> groups = new LinkedHashMap<>();
+        for (Node operand : operands) {
+            String variable = memberOf(operand, equality, membership);
+            if (variable != null) groups.computeIfAbsent(variable, k -> new ArrayList<>()).add(operand);
+        }
+
+        Map<Node, Node> replaced = new IdentityHashMap<>();
+        for (Map.Entry<String, List<Node>> group : groups.entrySet()) {
+            if (group.getValue().size() < 2) continue;
+            boolean numeric = AttributeSchema.get().isNumeric(group.getKey());
+            // key -> the value as first written
+            Map<String, String> values = new LinkedHashMap<>();
+            for (Node member : group.getValue()) {
+                for (String value : valuesOf(member)) {
+                    values.putIfAbsent(numeric ? numberKey(Double.parseDouble(value)) : value, value);
+                }
+            }
+            if (values.size() < MIN_MEMBERSHIP_VALUES) continue;
+            Node folded = Node.membership(group.getKey(), membership, new ArrayList<>(values.values()));
+            for (Node member : group.getValue()) replaced.put(member, null);
+            replaced.put(group.getValue().get(0), folded);
+        }
+        if (replaced.isEmpty()) return operands;
+
+        List<Node> result = new ArrayList<>();
+        for (Node operand : operands) {
+            if (!replaced.containsKey(operand)) result.add(operand);
+            else if (replaced.get(operand) != null) result.add(replaced.get(operand));
+        }
+        return result;
+    }
+
+    // The attribute if the node can join a set of the given kind, null otherwise
+    private static String memberOf(Node node, String equality, String membership) {
+        if (node != null && node.isMembership()) {
+            if (!membership.equals(node.operator) || node.value == null) return null;
+            boolean numeric = AttributeSchema.get().isNumeric(node.value);
+            if (!numeric && !AttributeSchema.get().isAttribute(node.value)) return null;
+            for (String value : node.getLiterals()) {
+                // Leave bad literals where they are, so they still throw
+                if (value == null || (numeric && !isNumber(value))) return null;
+            }
+            return node.value;
+        }
+        Atom atom = Atom.of(node);
+        return atom != null && atom.operator.equals(equality) ? atom.variable : null;
+    }
+
+    private static List<String> valuesOf(Node node) {
+        if (node.isMembership()) return node.getLiterals();
+        return List.of(node.value.substring(node.value.indexOf(node.operator) + node.operator.length()).trim());
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            return !Double.isNaN(Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // -0.0 == 0.0, so they need the same key
+    private static String numberKey(double number) {
+        return Double.toString(number == 0 ? 0.0 : number);
+    }
+
+    // Conditions of an AND on one attribute that still matter, or null if they can't all hold
+    private static Set<Node> conjunction(List<Atom> atoms) {
+        Atom lower = null;
+        Atom upper = null;
+        Atom equal = null;
+        Map<String, Atom> notEqual = new LinkedHashMap<>();
+        for (Atom atom : atoms) {
+            switch (atom.operator) {
+                case ">": case ">=":
+                    if (lower == null || tighterLower(atom, lower)) lower = atom;
+                    break;
+                case "<": case "<=":
+                    if (upper == null || tighterUpper(atom, upper)) upper = atom;
+                    break;
+                case "=":
+                    if (equal == null) equal = atom;
+                    else if (!equal.key.equals(atom.key)) return null;
+                    break;
+                default:
+                    notEqual.putIfAbsent(atom.key, atom);
+            }
+        }
+        if (lower != null && upper != null && !(lower.number < upper.number
+                || (lower.number == upper.number && lower.inclusive() && upper.inclusive()))) {
+            return null;
+        }
+
+        Set<Node> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (equal != null) {
+            // x = a decides everything else: either it fits the other conditions or nothing does
+            if (notEqual.containsKey(equal.key) || !allows(lower, equal.number) || !allows(upper, equal.number)) {
+                return null;
+            }
+            keep.add(equal.node);
+            return keep;
+        }
+        if (lower != null) keep.add(lower.node);
+        if (upper != null) keep.add(upper.node);
+        for (Atom atom : notEqual.values()) {
+            // x != 5 adds nothing once the range already excludes 5
+            if (allows(lower, atom.number) && allows(upper, atom.number)) keep.add(atom.node);
+        }
+        return keep;
+    }
+
+    // Conditions of an OR on one attribute that still matter, or null if one of them always holds
+    private static Set<Node> disjunction(List<Atom> atoms) {
+        Atom up = null;
+        Atom down = null;
+        Map<String, Atom> equal = new LinkedHashMap<>();
+        Atom notEqual = null;
+        for (Atom atom : atoms) {
+            switch (atom.operator) {
+                case ">": case ">=":
+                    if (up == null || tighterLower(up, atom)) up = atom;
+                    break;
+                case "<": case "<=":
+                    if (down == null || tighterUpper(down, atom)) down = atom;
+                    break;
+                case "=":
+                    equal.putIfAbsent(atom.key, atom);
+                    break;
+                default:
+                    // x != a OR x != b holds for everything when a != b
+                    if (notEqual != null && !notEqual.key.equals(atom.key)) return null;
+                    if (notEqual == null) notEqual = atom;
+            }
+        }
+        // x > a OR x < b covers everything when the two rays meet
+        if (up != null && down != null && (up.number < down.number
+                || (up.number == down.number && (up.inclusive() || down.inclusive())))) {
+            return null;
+        }
+
+        Set<Node> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (notEqual != null) {
+            // x != a holds everywhere except a, so it's true overall if anything else covers a,
+            // and it already covers every other condition that doesn't
+            if (equal.containsKey(notEqual.key) || covers(up, notEqual) || covers(down, notEqual)) return null;
+            keep.add(notEqual.node);
+            return keep;
+        }
+        if (up != null) keep.add(up.node);
+        if (down != null) keep.add(down.node);
+        for (Atom atom : equal.values()) {
+            if (!covers(up, atom) && !covers(down, atom)) keep.add(atom.node);
+        }
+        return keep;
+    }
+
+    private static boolean tighterLower(Atom a, Atom b) {
+        return a.number > b.number || (a.number == b.number && !a.inclusive() && b.inclusive());
+    }
+
+    private static boolean tighterUpper(Atom a, Atom b) {
+        return a.number < b.number || (a.number == b.number && !a.inclusive() && b.inclusive());
+    }
+
+    // Does this bound (null = no bound) let the value through
+    private static boolean allows(Atom bound, double value) {
+        if (bound == null || !bound.numeric) return true;
+        switch (bound.operator) {
+            case ">": return value > bound.number;
+            case ">=": return value >= bound.number;
+            case "<": return value < bound.number;
+            default: return value <= bound.number;
+        }
+    }
+
+    private static boolean covers(Atom ray, Atom value) {
+        return ray != null && value.numeric && allows(ray, value.number);
+    }
+
+    private static boolean sameInstances(List<Node> a, List<Node> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isConstant(Node node) {
+        return node != null && "constant".equals(node.type);
+    }
+
+    private static Node constant(boolean value) {
+        return new Node("constant", null, Boolean.toString(value));
+    }
+
+    // A condition we know how to reason about. Numeric attributes only count when the literal is a number,
+    // since anything else is an error the interpreter has to keep raising.
+    private static class Atom {
+        final Node node;
+        final String variable;
+        final String operator;
+        final boolean numeric;
+        final double number;
+        // What equality means for this attribute: numbers by value (30 = 30.0), strings as written
+        final String key;
+
+        private Atom(Node node, String variable, String operator, boolean numeric, double number, String key) {
+            this.node = node;
+            this.variable = variable;
+            this.operator = operator;
+            this.numeric = numeric;
+            this.number = number;
+            this.key = key;
+        }
+
+        boolean inclusive() {
+            return operator.length() == 2;
+        }
+
+        static Atom of(Node node) {
+            if (node == null || !"operand".equals(node.type) || node.isMembership() || node.operator == null || node.value == null) return null;
+            int idx = node.value.indexOf(node.operator);
+            if (idx < 0) return null;
+            String variable = node.value.substring(0, idx).trim();
+            String value = node.value.substring(idx + node.operator.length()).trim();
+
+            if (AttributeSchema.get().isNumeric(variable)) {
+                double number;
+                try {
+                    number = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (Double.isNaN(number)) return null;
+                return new Atom(node, variable, node.operator, true, number, numberKey(number));
+            }
+            if (!"=".equals(node.operator) && !"!=".equals(node.operator)) return null;
+            return new Atom(node, variable, node.operator, false, Double.NaN, value);
+        }
+    }
+}
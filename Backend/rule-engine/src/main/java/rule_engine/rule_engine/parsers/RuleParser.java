@@ -7,32 +7,22 @@ import java.util.*;
 
 @Component
 public class RuleParser {
-    // Catalog
-    private static final Map<String, List<String>> VALID_OPERATORS = new HashMap<String, List<String>>() {{
-        put("age", Arrays.asList(">", "<", "=", ">=", "<=", "!="));
-        put("salary", Arrays.asList(">", "<", "=", ">=", "<=", "!="));
-        put("experience", Arrays.asList(">", "<", "=", ">=", "<=", "!="));
-        put("department", Arrays.asList("=", "!="));
-        put("name", Arrays.asList("=", "!="));
-        put("email", Arrays.asList("=", "!="));
-    }};
-
-    private static final Set<String> VALID_ATTRIBUTES = new HashSet<>(VALID_OPERATORS.keySet());
+    // The attribute catalog is AttributeSchema
 
     // TODO: ADD support for NOT operator
     // For now, keeping it simple with AND/OR operations
+    //
+    // One pass over the input: the Lexer hands out tokens on demand and the Parser below is plain
+    // recursive descent, so a rule is parsed in time linear in its length. A run of the same operator
+    // becomes one node (left/right for two operands, children for more) instead of a deep chain.
+    // Errors say where in the input things went wrong (0-based position).
     public static Node parseExpression(String expr) {
         if (expr == null || expr.trim().isEmpty()) {
             throw new InvalidRuleException("Expression cannot be empty");
         }
 
-        expr = expr.replaceAll("\\s+", "");
-        // Makes life easier to just use && and || internally
-        // Yeah, I know this isn't the most elegant solution but it works ¯\_(ツ)_/¯
-        expr = expr.replace("AND", "&&").replace("OR", "||");
-
         try {
-            return parseOrExpression(expr); // Start with OR since it has lower precedence
+            return new Parser(expr).parse();
         } catch (Exception e) {
             if (e instanceof InvalidRuleException || e instanceof InvalidConditionException) {
                 throw e;
@@ -41,98 +31,267 @@ public class RuleParser {
         }
     }
 
-    // Handles OR expressions first - lowest precedence
-    // e.g., "a && b || c && d" -> splits on the ||
-    private static Node parseOrExpression(String expr) {
-        int idx = findOperator(expr, "||");
-        if (idx != -1) {
-            Node node = new Node("operator", "OR", null);
-            node.left = parseAndExpression(expr.substring(0, idx));
-            node.right = parseOrExpression(expr.substring(idx + 2));
-            return node;
+    private enum TokenType { LPAREN, RPAREN, COMMA, AND, OR, COMPARISON, WORD, STRING, END }
+
+    // Splits the input into tokens. AND/&& and OR/|| are the same token, whitespace only separates
+    // tokens (it's kept inside quoted strings), and a bare word runs until whitespace, a bracket,
+    // a comma, a quote, a comparison character or &&/||.
+    private static class Lexer {
+        private final String input;
+        private int position;
+
+        TokenType type;
+        String text;
+        int start;
+
+        Lexer(String input) {
+            this.input = input;
+            next();
         }
-        return parseAndExpression(expr);
-    }
 
-    // After OR, we handle AND expressions
-    private static Node parseAndExpression(String expr) {
-        int idx = findOperator(expr, "&&");
-        if (idx != -1) {
-            Node node = new Node("operator", "AND", null);
-            node.left = parseCondition(expr.substring(0, idx));
-            node.right = parseAndExpression(expr.substring(idx + 2));
-            return node;
+        void next() {
+            while (position < input.length() && Character.isWhitespace(input.charAt(position))) position++;
+            start = position;
+            if (position == input.length()) {
+                set(TokenType.END, "");
+                return;
+            }
+
+            char c = input.charAt(position);
+            if (c == '(') { position++; set(TokenType.LPAREN, "("); return; }
+            if (c == ')') { position++; set(TokenType.RPAREN, ")"); return; }
+            if (c == ',') { position++; set(TokenType.COMMA, ","); return; }
+            if (input.startsWith("&&", position)) { position += 2; set(TokenType.AND, "AND"); return; }
+            if (input.startsWith("||", position)) { position += 2; set(TokenType.OR, "OR"); return; }
+            if (c == '>' || c == '<' || c == '!' || c == '=') {
+                boolean twoChars = c != '=' && position + 1 < input.length() && input.charAt(position + 1) == '=';
+                if (c == '!' && !twoChars) {
+                    throw new InvalidConditionException("Unexpected '!' at position " + position);
+                }
+                position += twoChars ? 2 : 1;
+                set(TokenType.COMPARISON, input.substring(start, position));
+                return;
+            }
+            if (c == '\'' || c == '"') {
+                int close = input.indexOf(c, position + 1);
+                if (close < 0) {
+                    throw new InvalidConditionException("Unterminated string starting at position " + position);
+                }
+                position = close + 1;
+                set(TokenType.STRING, input.substring(start + 1, close));
+                return;
+            }
+
+            while (position < input.length() && !endsWord(position)) position++;
+            String word = input.substring(start, position);
+            set("AND".equals(word) ? TokenType.AND : "OR".equals(word) ? TokenType.OR : TokenType.WORD, word);
+        }
+
+        private boolean endsWord(int i) {
+            char c = input.charAt(i);
+            return Character.isWhitespace(c) || "(),'\"<>=!".indexOf(c) >= 0
+                    || input.startsWith("&&", i) || input.startsWith("||", i);
+        }
+
+        private void set(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
         }
-        return parseCondition(expr);
     }
 
-    // Handles the basic conditions - this is where the rubber meets the road
-    // Supports six types of comparisons: >, <, =, >=, <=, and !=
-    private static Node parseCondition(String expr) {
-        expr = expr.trim();
+    private static class Parser {
+        private final Lexer lexer;
 
-        // Handle nested expressions first
-        if (expr.startsWith("(") && expr.endsWith(")")) {
-            return parseExpression(expr.substring(1, expr.length() - 1));
+        Parser(String input) {
+            this.lexer = new Lexer(input);
         }
 
-        String variable = extractVariable(expr);
-        if (!VALID_ATTRIBUTES.contains(variable)) {
-            throw new InvalidConditionException("Invalid attribute: " + variable);
+        Node parse() {
+            Node node = parseOr();
+            if (lexer.type != TokenType.END) {
+                throw new InvalidRuleException("Unexpected '" + lexer.text + "' at position " + lexer.start);
+            }
+            return node;
         }
 
-        String operator = extractOperator(expr);
-        if (!VALID_OPERATORS.get(variable).contains(operator)) {
-            throw new InvalidConditionException("Invalid operator '" + operator + "' for variable '" + variable + "'");
+        // OR has the lowest precedence: a AND b OR c AND d -> OR(AND(a, b), AND(c, d))
+        private Node parseOr() {
+            Node first = parseAnd();
+            if (lexer.type != TokenType.OR) return first;
+            List<Node> operands = new ArrayList<>();
+            operands.add(first);
+            while (lexer.type == TokenType.OR) {
+                lexer.next();
+                operands.add(parseAnd());
+            }
+            return Node.join("OR", operands);
         }
 
-        // Not the prettiest code, but gets the job done
-        // Would be nice to refactor this into something more elegant someday
-        String[] parts = expr.split(operator, 2);
-        validateParts(parts, expr);
+        private Node parseAnd() {
+            Node first = parsePrimary();
+            if (lexer.type != TokenType.AND) return first;
+            List<Node> operands = new ArrayList<>();
+            operands.add(first);
+            while (lexer.type == TokenType.AND) {
+                lexer.next();
+                operands.add(parsePrimary());
+            }
+            return Node.join("AND", operands);
+        }
 
-        String value = parts[1].trim().replaceAll("^'|'$", "");  // Remove surrounding quotes if present
-        return new Node("operand", operator, variable + operator + value);
-    }
+        private Node parsePrimary() {
+            if (lexer.type == TokenType.LPAREN) {
+                int open = lexer.start;
+                lexer.next();
+                Node node = parseOr();
+                if (lexer.type != TokenType.RPAREN) {
+                    throw new InvalidRuleException("Missing ')' for '(' at position " + open + ", found "
+                            + describe() + " at position " + lexer.start);
+                }
+                lexer.next();
+                return node;
+            }
+            return parseCondition();
+        }
+
+        // Handles the basic conditions - this is where the rubber meets the road
+        // Supports six types of comparisons: >, <, =, >=, <=, and !=
+        // plus set membership: variable IN (v1, v2, ...) and variable NOT IN (...)
+        private Node parseCondition() {
+            if (lexer.type != TokenType.WORD) {
+                throw new InvalidConditionException("Expected a condition at position " + lexer.start + ", found " + describe());
+            }
+            String variable = lexer.text;
+            int variableStart = lexer.start;
+            AttributeSchema schema = AttributeSchema.get();
+            if (!schema.isAttribute(variable)) {
+                throw new InvalidConditionException("Invalid attribute: " + variable + " at position " + variableStart);
+            }
+            lexer.next();
+
+            if (lexer.type == TokenType.WORD && ("IN".equals(lexer.text) || "NOT".equals(lexer.text))) {
+                return parseMembership(variable);
+            }
+            if (lexer.type != TokenType.COMPARISON) {
+                throw new InvalidConditionException("No valid operator found after '" + variable + "' at position " + lexer.start);
+            }
+            String operator = lexer.text;
+            if (!schema.operators(variable).contains(operator)) {
+                throw new InvalidConditionException("Invalid operator '" + operator + "' for variable '" + variable + "' at position " + lexer.start);
+            }
+            lexer.next();
 
-    private static String extractVariable(String expr) {
-        for (String operator : Arrays.asList("!=", ">=", "<=", "=", ">", "<")) {
-            if (expr.contains(operator)) {
-                return expr.split(operator)[0].trim();
+            if (lexer.type != TokenType.WORD && lexer.type != TokenType.STRING) {
+                throw new InvalidConditionException("Both variable and value must be provided: missing value for '" + variable
+                        + "' at position " + lexer.start);
             }
+            String value = lexer.text;
+            lexer.next();
+            return new Node("operand", operator, variable + operator + value);
+        }
+
+        private Node parseMembership(String variable) {
+            int operatorStart = lexer.start;
+            String operator = "IN";
+            if ("NOT".equals(lexer.text)) {
+                lexer.next();
+                if (lexer.type != TokenType.WORD || !"IN".equals(lexer.text)) {
+                    throw new InvalidConditionException("Expected IN after NOT at position " + lexer.start + ", found " + describe());
+                }
+                operator = "NOT IN";
+            }
+            if (!AttributeSchema.get().operators(variable).contains(operator)) {
+                throw new InvalidConditionException("Invalid operator '" + operator + "' for variable '" + variable + "' at position " + operatorStart);
+            }
+            lexer.next();
+
+            if (lexer.type != TokenType.LPAREN) {
+                throw new InvalidConditionException("Expected '(' after " + operator + " at position " + lexer.start + ", found " + describe());
+            }
+            int open = lexer.start;
+            lexer.next();
+            List<String> values = new ArrayList<>();
+            while (true) {
+                if (lexer.type != TokenType.WORD && lexer.type != TokenType.STRING) {
+                    throw new InvalidConditionException("Expected a value in the " + operator + " list for '" + variable
+                            + "' at position " + lexer.start + ", found " + describe());
+                }
+                values.add(lexer.text);
+                lexer.next();
+                if (lexer.type == TokenType.RPAREN) break;
+                if (lexer.type != TokenType.COMMA) {
+                    throw new InvalidConditionException("Missing ')' for '(' at position " + open + ", found "
+                            + describe() + " at position " + lexer.start);
+                }
+                lexer.next();
+            }
+            lexer.next();
+            return Node.membership(variable, operator, values);
+        }
+
+        private String describe() {
+            return lexer.type == TokenType.END ? "end of input" : "'" + lexer.text + "'";
         }
-        throw new InvalidConditionException("No valid operator found in expression: " + expr);
     }
 
-    private static String extractOperator(String expr) {
-        if (expr.contains("!=")) return "!=";
-        if (expr.contains(">=")) return ">=";
-        if (expr.contains("<=")) return "<=";
-        if (expr.contains("=")) return "=";
-        if (expr.contains(">")) return ">";
-        if (expr.contains("<")) return "<";
-        throw new InvalidConditionException("No valid operator found in expression: " + expr);
+    // Prints an AST back as a rule string that parses to the same tree: every AND/OR group in brackets,
+    // numbers bare and everything else quoted
+    public static String toRuleString(Node node) {
+        StringBuilder out = new StringBuilder();
+        appendRuleString(node, out);
+        return out.toString();
     }
 
-    private static void validateParts(String[] parts, String expr) {
-        if (parts.length != 2) {
-            throw new InvalidConditionException("Invalid condition format: " + expr);
+    private static void appendRuleString(Node node, StringBuilder out) {
+        if (node == null || "constant".equals(node.type)) {
+            throw new InvalidRuleException("Cannot print " + (node == null ? "an empty rule" : "a constant") + " as a rule string");
+        }
+        if ("operator".equals(node.type)) {
+            out.append('(');
+            List<Node> operands = node.operands();
+            for (int i = 0; i < operands.size(); i++) {
+                if (i > 0) out.append(' ').append(node.operator).append(' ');
+                appendRuleString(operands.get(i), out);
+            }
+            out.append(')');
+            return;
         }
-        if (parts[0].trim().isEmpty() || parts[1].trim().isEmpty()) {
-            throw new InvalidConditionException("Both variable and value must be provided: " + expr);
+        if (node.isMembership()) {
+            out.append(node.value).append(' ').append(node.operator).append(" (");
+            List<String> values = node.getLiterals();
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) out.append(", ");
+                appendValue(values.get(i), out);
+            }
+            out.append(')');
+            return;
         }
+        int idx = node.value.indexOf(node.operator);
+        String variable = node.value.substring(0, idx);
+        String value = node.value.substring(idx + node.operator.length());
+        out.append(variable).append(' ').append(node.operator).append(' ');
+        appendValue(value, out);
     }
 
-    private static int findOperator(String expr, String operator) {
-        int depth = 0;
-        for (int i = 0; i < expr.length() - 1; i++) {
-            if (expr.charAt(i) == '(') depth++;
-            if (expr.charAt(i) == ')') depth--;
-            if (depth == 0 && expr.startsWith(operator, i)) {
-                return i;
-            }
+    private static void appendValue(String value, StringBuilder out) {
+        if (isBareNumber(value)) {
+            out.append(value);
+        } else {
+            char quote = value.indexOf('\'') < 0 ? '\'' : '"';
+            out.append(quote).append(value).append(quote);
+        }
+    }
+
+    private static boolean isBareNumber(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i)) || "(),'\"<>=!&|".indexOf(value.charAt(i)) >= 0) return false;
+        }
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
         }
-        return -1;
     }
 
     // The main evaluation logic
@@ -144,16 +303,49 @@ public class RuleParser {
         if (node.type.equals("operator")) {
             switch (node.operator) {
                 case "AND":
-                    return evaluate(node.left, context) && evaluate(node.right, context);
+                    for (Node operand : node.operands()) {
+                        if (!evaluate(operand, context)) return false;
+                    }
+                    return true;
                 case "OR":
-                    return evaluate(node.left, context) || evaluate(node.right, context);
+                    for (Node operand : node.operands()) {
+                        if (evaluate(operand, context)) return true;
+                    }
+                    return false;
                 default:
                     throw new InvalidRuleException("Unknown operator: " + node.operator);
             }
         }
 
+        // Folded by RuleOptimizer
+        if (node.type.equals("constant")) {
+            return Boolean.parseBoolean(node.value);
+        }
+
         // Handle the actual comparisons
         // Bit of a mess with the type casting, but it works for our use case
+        if (node.isMembership()) {
+            String variable = node.value;
+            validateContextVariable(variable, context);
+            boolean found = false;
+            if (isNumericVariable(variable)) {
+                double contextValue = ((Number) context.get(variable)).doubleValue();
+                for (String value : node.getLiterals()) {
+                    validateNumericOperation(variable, value);
+                    if (contextValue == Double.parseDouble(value)) found = true;
+                }
+            } else {
+                String contextValue = context.get(variable).toString();
+                for (String value : node.getLiterals()) {
+                    if (contextValue.equals(value)) found = true;
+                }
+            }
+            switch (node.operator) {
+                case "IN": return found;
+                case "NOT IN": return !found;
+                default: throw new InvalidConditionException("Unsupported operator: " + node.operator);
+            }
+        }
         if (node.type.equals("operand")) {
             String[] parts = node.value.split(node.operator, 2);
             String variable = parts[0].trim();
@@ -212,7 +404,7 @@ public class RuleParser {
     }
 
     private static boolean isNumericVariable(String variable) {
-        return Arrays.asList("age", "salary", "experience").contains(variable);
+        return AttributeSchema.get().isNumeric(variable);
     }
 
     // Helpful debug method - dumps the AST structure to console
@@ -223,12 +415,18 @@ public class RuleParser {
 
         if (node.type.equals("operator")) {
             System.out.println(indent + "Operator: " + node.operator);
+        } else if (node.isMembership()) {
+            System.out.println(indent + "Operand: " + node.value + " " + node.operator + " " + node.getLiterals());
+            return;
         } else if (node.type.equals("operand")) {
             System.out.println(indent + "Operand: " + node.value);
+        } else if (node.type.equals("constant")) {
+            System.out.println(indent + "Constant: " + node.value);
         }
 
-        printAST(node.left, level + 1);
-        printAST(node.right, level + 1);
+        for (Node operand : node.operands()) {
+            printAST(operand, level + 1);
+        }
     }
 
     /* Keeping this commented out for now - good for testing though!
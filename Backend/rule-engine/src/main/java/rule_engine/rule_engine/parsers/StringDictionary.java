@@ -0,0 +1,35 @@
+package rule_engine.rule_engine.parsers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Int codes for every string literal a compiled rule compares against, so string conditions are
+// int compares at evaluation time. Codes only ever get added (at compile time), so a code stays
+// valid for as long as the JVM runs and the dictionary is bounded by the literals in the rule set.
+// Record values are looked up, never added: a value no rule mentions gets NOT_FOUND, which equals nothing.
+final class StringDictionary {
+
+    static final int NOT_FOUND = -1;
+
+    private static final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    private StringDictionary() {
+    }
+
+    static int intern(String literal) {
+        Integer code = codes.get(literal);
+        if (code != null) return code;
+        synchronized (codes) {
+            return codes.computeIfAbsent(literal, k -> codes.size());
+        }
+    }
+
+    static int lookup(String value) {
+        Integer code = codes.get(value);
+        return code == null ? NOT_FOUND : code;
+    }
+
+    static int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,171 @@
+package rule_engine.rule_engine.parsers;
+
+import java.util.*;
+
+// Sorted index over every numeric threshold in a RuleNetwork.
+// Conditions are grouped by (attribute, operator) and each group's thresholds are kept in a sorted double[].
+// The network numbers its conditions so that each group is a contiguous run of ids in threshold order,
+// which means for any record value the satisfied conditions of a group are one contiguous range:
+// one binary search per group, then a couple of Arrays.fill calls, however many rules there are.
+final class ThresholdIndex {
+
+    private static final byte GT = 0, GE = 1, LT = 2, LE = 3, EQ = 4, NE = 5;
+
+    // Per attribute (as its numeric slot), so each record value is read once
+    private final int[] attributes;
+    private final int[][] groupsByAttribute;
+    // Per group
+    private final byte[] operators;
+    private final double[][] thresholds;
+    private final int[] firstIds;
+    // Conditions [0, indexedCount) are covered by the index; the rest are evaluated one by one
+    private final int indexedCount;
+
+    private ThresholdIndex(int[] attributes, int[][] groupsByAttribute, byte[] operators, double[][] thresholds, int[] firstIds, int indexedCount) {
+        this.attributes = attributes;
+        this.groupsByAttribute = groupsByAttribute;
+        this.operators = operators;
+        this.thresholds = thresholds;
+        this.firstIds = firstIds;
+        this.indexedCount = indexedCount;
+    }
+
+    int getIndexedCount() {
+        return indexedCount;
+    }
+
+    // Works out the indexable conditions and the new numbering: newIds[oldId] is where each condition goes,
+    // with indexed groups first (sorted by threshold) and everything else after, in original order
+    static ThresholdIndex build(List<CompiledNode> conditions, int[] newIds) {
+        Map<Integer, Map<Byte, List<Integer>>> groups = new TreeMap<>();
+        List<Integer> rest = new ArrayList<>();
+        for (int id = 0; id < conditions.size(); id++) {
+            CompiledNode condition = conditions.get(id);
+            byte operator = operatorOf(condition);
+            if (operator < 0 || Double.isNaN(((NumericComparison) condition).constant)) {
+                rest.add(id);
+                continue;
+            }
+            groups.computeIfAbsent(((NumericComparison) condition).slot, k -> new TreeMap<>())
+                    .computeIfAbsent(operator, k -> new ArrayList<>())
+                    .add(id);
+        }
+
+        List<Integer> attributes = new ArrayList<>();
+        List<int[]> groupsByAttribute = new ArrayList<>();
+        List<Byte> operators = new ArrayList<>();
+        List<double[]> thresholds = new ArrayList<>();
+        List<Integer> firstIds = new ArrayList<>();
+        int next = 0;
+        for (Map.Entry<Integer, Map<Byte, List<Integer>>> attribute : groups.entrySet()) {
+            int[] groupIds = new int[attribute.getValue().size()];
+            int g = 0;
+            for (Map.Entry<Byte, List<Integer>> group : attribute.getValue().entrySet()) {
+                List<Integer> ids = group.getValue();
+                ids.sort(Comparator.comparingDouble(id -> ((NumericComparison) conditions.get(id)).constant));
+                double[] values = new double[ids.size()];
+                firstIds.add(next);
+                for (int i = 0; i < ids.size(); i++) {
+                    values[i] = ((NumericComparison) conditions.get(ids.get(i))).constant;
+                    newIds[ids.get(i)] = next++;
+                }
+                groupIds[g++] = operators.size();
+                operators.add(group.getKey());
+                thresholds.add(values);
+            }
+            attributes.add(attribute.getKey());
+            groupsByAttribute.add(groupIds);
+        }
+        int indexedCount = next;
+        for (int id : rest) {
+            newIds[id] = next++;
+        }
+
+        byte[] ops = new byte[operators.size()];
+        for (int i = 0; i < ops.length; i++) ops[i] = operators.get(i);
+        return new ThresholdIndex(
+                attributes.stream().mapToInt(Integer::intValue).toArray(),
+                groupsByAttribute.toArray(new int[0][]),
+                ops,
+                thresholds.toArray(new double[0][]),
+                firstIds.stream().mapToInt(Integer::intValue).toArray(),
+                indexedCount);
+    }
+
+    // Fills values[0, indexedCount) with TRUE/FALSE/ERROR for this record
+    void evaluate(EvaluationContext context, byte[] values) {
+        for (int a = 0; a < attributes.length; a++) {
+            if (!context.hasNumber(attributes[a])) {
+                // Missing, null or not a number: the interpreter would throw on every one of these
+                for (int group : groupsByAttribute[a]) {
+                    Arrays.fill(values, firstIds[group], firstIds[group] + thresholds[group].length, RuleNetwork.ERROR);
+                }
+                continue;
+            }
+            double x = context.numbers[attributes[a]];
+            for (int group : groupsByAttribute[a]) {
+                fillGroup(group, x, values);
+            }
+        }
+    }
+
+    private void fillGroup(int group, double x, byte[] values) {
+        double[] t = thresholds[group];
+        int base = firstIds[group];
+        int n = t.length;
+
+        if (Double.isNaN(x)) {
+            // NaN compares false to everything, so only != holds
+            Arrays.fill(values, base, base + n, operators[group] == NE ? RuleNetwork.TRUE : RuleNetwork.FALSE);
+            return;
+        }
+
+        int lower = lowerBound(t, x);
+        int upper = upperBound(t, x);
+        int from;
+        int to;
+        switch (operators[group]) {
+            case GT: from = 0; to = lower; break;       // x > t  <=>  t < x
+            case GE: from = 0; to = upper; break;       // x >= t <=>  t <= x
+            case LT: from = upper; to = n; break;       // x < t  <=>  t > x
+            case LE: from = lower; to = n; break;       // x <= t <=>  t >= x
+            case EQ: from = lower; to = upper; break;
+            default:
+                Arrays.fill(values, base, base + n, RuleNetwork.TRUE);
+                Arrays.fill(values, base + lower, base + upper, RuleNetwork.FALSE);
+                return;
+        }
+        Arrays.fill(values, base, base + n, RuleNetwork.FALSE);
+        Arrays.fill(values, base + from, base + to, RuleNetwork.TRUE);
+    }
+
+    // First index with t[i] >= x. Plain < rather than Double.compare so -0.0 and 0.0 count as equal, like ==
+    private static int lowerBound(double[] t, double x) {
+        int lo = 0, hi = t.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (t[mid] < x) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // First index with t[i] > x
+    private static int upperBound(double[] t, double x) {
+        int lo = 0, hi = t.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (t[mid] <= x) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static byte operatorOf(CompiledNode condition) {
+        if (condition instanceof GreaterThan) return GT;
+        if (condition instanceof GreaterOrEqual) return GE;
+        if (condition instanceof LessThan) return LT;
+        if (condition instanceof LessOrEqual) return LE;
+        if (condition instanceof NumericEquals) return EQ;
+        if (condition instanceof NumericNotEquals) return NE;
+        return -1;
+    }
+}
@@ -0,0 +1,65 @@
+package rule_engine.rule_engine.parsers;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD versions of the ColumnarEvaluator compares. Only loaded when the JVM runs with
+// --add-modules jdk.incubator.vector; ColumnarEvaluator checks that before calling in here.
+// Lane counts are powers of two no bigger than 64, so a vector's mask never straddles two bitmap words.
+final class VectorComparisons {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private VectorComparisons() {
+    }
+
+    static void compare(double[] column, int size, int operator, double constant, long[] bits) {
+        VectorOperators.Comparison comparison = comparisonOf(operator);
+        int lanes = DOUBLES.length();
+        int i = 0;
+        for (; i + lanes <= size; i += lanes) {
+            long mask = DoubleVector.fromArray(DOUBLES, column, i).compare(comparison, constant).toLong();
+            bits[i >>> 6] |= mask << (i & 63);
+        }
+        // Whatever doesn't fill a whole vector
+        for (; i < size; i++) {
+            double value = column[i];
+            boolean hit;
+            switch (operator) {
+                case ColumnarEvaluator.GT: hit = value > constant; break;
+                case ColumnarEvaluator.GE: hit = value >= constant; break;
+                case ColumnarEvaluator.LT: hit = value < constant; break;
+                case ColumnarEvaluator.LE: hit = value <= constant; break;
+                case ColumnarEvaluator.EQ: hit = value == constant; break;
+                default: hit = value != constant; break;
+            }
+            bits[i >>> 6] |= (hit ? 1L : 0L) << i;
+        }
+    }
+
+    static void equalCodes(int[] codes, int size, int code, long[] bits) {
+        int lanes = INTS.length();
+        int i = 0;
+        for (; i + lanes <= size; i += lanes) {
+            long mask = IntVector.fromArray(INTS, codes, i).compare(VectorOperators.EQ, code).toLong();
+            bits[i >>> 6] |= mask << (i & 63);
+        }
+        for (; i < size; i++) {
+            bits[i >>> 6] |= (codes[i] == code ? 1L : 0L) << i;
+        }
+    }
+
+    private static VectorOperators.Comparison comparisonOf(int operator) {
+        switch (operator) {
+            case ColumnarEvaluator.GT: return VectorOperators.GT;
+            case ColumnarEvaluator.GE: return VectorOperators.GE;
+            case ColumnarEvaluator.LT: return VectorOperators.LT;
+            case ColumnarEvaluator.LE: return VectorOperators.LE;
+            case ColumnarEvaluator.EQ: return VectorOperators.EQ;
+            default: return VectorOperators.NE;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package rule_engine.rule_engine.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleSummary;
+import rule_engine.rule_engine.utils.ASTCodec;
+import rule_engine.rule_engine.utils.ASTConverter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+// Embedded rule store for deployments that don't want a MySQL instance. Two files in one directory:
+//  - rules.snapshot: every rule as of the last compaction. Layout: magic, version, next id, rule count,
+//    each rule as int length + rule, then a CRC32 of everything before it. Read through a memory-mapped
+//    FileChannel at startup, so a cold load is one sequential pass over the mapping.
+//  - rules.log: every save/delete since, appended as [int length][int CRC32][PUT|DELETE][payload]
+//
+// Startup loads the snapshot and replays the log on top. A record that's cut short or fails its checksum
+// (a crash mid-append) ends the log: it's truncated there and we carry on without it.
+// Compaction writes a new snapshot to a temp file, renames it over the old one, then empties the log.
+// Log records are idempotent (put/delete by id), so a crash between the rename and the truncate is
+// harmless - the old log just gets replayed on top of a snapshot that already contains it.
+//
+// All rules are also kept in memory, so reads never touch the disk. Writes are serialized; with fsync
+// on, a save returns once its record is on disk.
+@Slf4j
+public class FileRuleStore implements RuleStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x52554C53; // "RULS"
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final byte PUT = 1, DELETE = 2;
+    private static final int RECORD_HEADER = 8;
+    // The log is replayed through a buffer this big, whatever its size
+    private static final int REPLAY_BUFFER = 1 << 16;
+
+    private final Path dir;
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final boolean fsync;
+    private final long compactAfterRecords;
+
+    private final ConcurrentSkipListMap<Long, Rule> rules = new ConcurrentSkipListMap<>();
+    private final ASTConverter astConverter = new ASTConverter();
+    private FileChannel logChannel;
+    private long nextId = 1;
+    private long logRecords;
+
+    public FileRuleStore(Path dir, boolean fsync, long compactAfterRecords) {
+        this.dir = dir;
+        this.snapshotFile = dir.resolve("rules.snapshot");
+        this.logFile = dir.resolve("rules.log");
+        this.fsync = fsync;
+        this.compactAfterRecords = compactAfterRecords;
+    }
+
+    public synchronized void open() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        if (Files.exists(snapshotFile)) {
+            readSnapshot();
+        }
+        int fromSnapshot = rules.size();
+        logChannel = FileChannel.open(logFile, CREATE, READ, WRITE);
+        replayLog();
+        log.info("Loaded {} rules from {} ({} from the snapshot, {} log records) in {} ms", rules.size(), dir,
+                fromSnapshot, logRecords, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Compacts on the way out, so the next start only has to read the snapshot
+    public synchronized void close() throws IOException {
+        if (logChannel == null) return;
+        if (logRecords > 0) compact();
+        logChannel.close();
+        logChannel = null;
+    }
+
+    @Override
+    public Rule save(Rule rule) {
+        saveAll(List.of(rule));
+        return rule;
+    }
+
+    @Override
+    public synchronized List<Rule> saveAll(List<Rule> toSave) {
+        // New ids are only handed out once the records are in the log: if the append fails, the caller's
+        // rules and nextId are left as they were
+        long[] ids = new long[toSave.size()];
+        long next = nextId;
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (int i = 0; i < toSave.size(); i++) {
+            Rule rule = toSave.get(i);
+            ids[i] = rule.getId() != null ? rule.getId() : next++;
+            writeRecord(records, PUT, rule, ids[i]);
+        }
+        append(records.toByteArray(), toSave.size());
+        nextId = next;
+        for (int i = 0; i < toSave.size(); i++) {
+            Rule rule = toSave.get(i);
+            rule.setId(ids[i]);
+            rules.put(ids[i], rule);
+        }
+        return toSave;
+    }
+
+    @Override
+    public Optional<Rule> findById(Long id) {
+        return Optional.ofNullable(rules.get(id));
+    }
+
+    @Override
+    public List<Rule> findAllById(Collection<Long> ids) {
+        List<Rule> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Rule rule = rules.get(id);
+            if (rule != null) found.add(rule);
+        }
+        return found;
+    }
+
+    @Override
+    public List<Rule> findAll() {
+        return new ArrayList<>(rules.values());
+    }
+
+    @Override
+    public List<Rule> findPageAfter(long after, int limit) {
+        List<Rule> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Rule rule : rules.tailMap(after, false).values()) {
+            if (page.size() == limit) break;
+            page.add(rule);
+        }
+        return page;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return rules.containsKey(id);
+    }
+
+    @Override
+    public List<Long> findAllIds() {
+        return new ArrayList<>(rules.keySet());
+    }
+
+    @Override
+    public synchronized void deleteById(Long id) {
+        if (!rules.containsKey(id)) return;
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        writeRecord(record, DELETE, null, id);
+        append(record.toByteArray(), 1);
+        rules.remove(id);
+    }
+
+    @Override
+    public List<RuleSummary> findSummariesAfter(long after, int limit, boolean includeRuleString) {
+        List<RuleSummary> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Rule rule : rules.tailMap(after, false).values()) {
+            if (page.size() == limit) break;
+            page.add(new RuleSummary(rule.getId(), rule.getDescription(), includeRuleString ? rule.getRuleString() : null));
+        }
+        return page;
+    }
+
+    @Scheduled(fixedDelayString = "${rule-engine.file-store.compact-interval-ms:60000}")
+    public synchronized void compactIfNeeded() throws IOException {
+        if (logChannel != null && logRecords >= compactAfterRecords) compact();
+    }
+
+    public synchronized void compact() throws IOException {
+        long start = System.nanoTime();
+        Path tmp = dir.resolve("rules.snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeLong(nextId);
+            out.writeInt(rules.size());
+            ByteArrayOutputStream ruleBytes = new ByteArrayOutputStream();
+            for (Rule rule : rules.values()) {
+                ruleBytes.reset();
+                writeRule(new DataOutputStream(ruleBytes), rule.getId(), rule);
+                out.writeInt(ruleBytes.size());
+                ruleBytes.writeTo(out);
+            }
+            out.flush();
+            new DataOutputStream(buffered).writeInt((int) checked.getChecksum().getValue());
+            buffered.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        forceDirectory();
+        logChannel.truncate(0);
+        logChannel.position(0);
+        logChannel.force(true);
+        log.info("Compacted {} log records into a snapshot of {} rules in {} ms", logRecords, rules.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        logRecords = 0;
+    }
+
+    private void readSnapshot() throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile, READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < 21 || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a rule snapshot: " + snapshotFile);
+            }
+            byte version = buffer.get();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported rule snapshot version " + version + ": " + snapshotFile);
+            }
+            // Snapshots are renamed into place only once complete, so a bad checksum means real damage: stop
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, buffer.limit() - 4));
+            if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+                throw new IOException("Rule snapshot failed its checksum: " + snapshotFile);
+            }
+            nextId = buffer.getLong();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                Rule rule = readRule(buffer);
+                buffer.position(end);
+                rules.put(rule.getId(), rule);
+            }
+        }
+    }
+
+    // Streams the log one record at a time, so it can grow past what fits in memory (or in one array).
+    // Not closed: that would close the log channel too.
+    private void replayLog() throws IOException {
+        long size = logChannel.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(logChannel), REPLAY_BUFFER));
+        byte[] record = new byte[1024];
+        CRC32 crc = new CRC32();
+
+        long valid = 0;
+        while (size - valid >= RECORD_HEADER) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 1 || length > size - valid - RECORD_HEADER) break;
+            if (record.length < length) record = new byte[Math.max(length, record.length * 2)];
+            in.readFully(record, 0, length);
+            crc.reset();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != checksum) break;
+            apply(ByteBuffer.wrap(record, 0, length));
+            valid += RECORD_HEADER + length;
+            logRecords++;
+        }
+        if (valid < size) {
+            log.warn("Dropping {} bytes of incomplete or corrupt records at the end of {}", size - valid, logFile);
+            logChannel.truncate(valid);
+        }
+        logChannel.position(valid);
+    }
+
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+        if (type == PUT) {
+            Rule rule = readRule(record);
+            rules.put(rule.getId(), rule);
+            nextId = Math.max(nextId, rule.getId() + 1);
+        } else if (type == DELETE) {
+            long id = record.getLong();
+            rules.remove(id);
+            nextId = Math.max(nextId, id + 1);
+        } else {
+            throw new IllegalStateException("Unknown record type " + type + " in " + logFile);
+        }
+    }
+
+    // Appends whole records. If the write fails part way, cut the log back so later appends don't land
+    // behind a torn record (replay would stop there and lose them).
+    private void append(byte[] records, int count) {
+        long position = -1;
+        try {
+            position = logChannel.position();
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) logChannel.write(buffer);
+            if (fsync) logChannel.force(false);
+            logRecords += count;
+        } catch (IOException e) {
+            try {
+                if (position >= 0) {
+                    logChannel.truncate(position);
+                    logChannel.position(position);
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Could not write to " + logFile, e);
+        }
+    }
+
+    // The rename only survives a power cut once the directory entry is on disk too.
+    // Not every platform lets you open a directory; there's nothing better to do there.
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not fsync {}: {}", dir, e.getMessage());
+        }
+    }
+
+    // id is the rule's for a PUT, the deleted one's for a DELETE
+    private static void writeRecord(ByteArrayOutputStream out, byte type, Rule rule, long id) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(body);
+            data.writeByte(type);
+            if (type == PUT) {
+                writeRule(data, id, rule);
+            } else {
+                data.writeLong(id);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(body.toByteArray());
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(body.size());
+            header.writeInt((int) crc.getValue());
+            body.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeRule(DataOutputStream out, long id, Rule rule) throws IOException {
+        out.writeLong(id);
+        writeBytes(out, rule.getRuleString() == null ? null : rule.getRuleString().getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, rule.getDescription() == null ? null : rule.getDescription().getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, rule.getAst() == null ? null : ASTCodec.encode(rule.getAst()));
+    }
+
+    // -1 = null, otherwise length + bytes
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Rule readRule(ByteBuffer in) {
+        Rule rule = new Rule();
+        rule.setId(in.getLong());
+        byte[] ruleString = readBytes(in);
+        rule.setRuleString(ruleString == null ? null : new String(ruleString, StandardCharsets.UTF_8));
+        byte[] description = readBytes(in);
+        rule.setDescription(description == null ? null : new String(description, StandardCharsets.UTF_8));
+        // Same decode + intern path as rows coming out of MySQL
+        rule.setAst(astConverter.convertToEntityAttribute(readBytes(in)));
+        return rule;
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package rule_engine.rule_engine.repositories;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+// Caps how many repository calls run at once. With platform threads Tomcat's pool did that for us;
+// with virtual threads thousands of requests can reach findById together and would all pile up
+// inside Hikari's getConnection (and time out there). Waiting here is cheap for a virtual thread.
+// JpaRuleStore puts every call through this; the file store has no connections to run out of, so its
+// reads don't queue here.
+// The limit has to stay below the Hikari pool size: a save can need a second connection while it holds
+// the first (the table id generator fetches the next block of ids on its own connection, one thread at
+// a time), and with every connection held by a save nobody gets it until Hikari times out. So by default
+// (max-concurrency 0) it's the pool size minus one, and an explicit limit that isn't below the pool size
+// fails startup. Anything else taking a connection outside this (the actuator health check) only holds
+// it briefly, so at worst the id generator waits for it.
+// Never call into this from inside a call() - nested permits can deadlock. JpaRuleStore only wraps single
+// repository calls, so that holds as long as the repository doesn't call back into the store.
+@Component
+public class JdbcLimiter {
+
+    @Value("${rule-engine.jdbc.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // Absent with the file store
+    @Autowired
+    private ObjectProvider<DataSource> dataSource;
+
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(limit(), true);
+        Gauge.builder("rules.jdbc.waiting", permits, Semaphore::getQueueLength)
+                .description("Threads waiting for a database permit")
+                .register(registry);
+    }
+
+    private int limit() {
+        if (!(dataSource.getIfAvailable() instanceof HikariDataSource hikari)) {
+            return maxConcurrency > 0 ? maxConcurrency : Integer.MAX_VALUE;
+        }
+        int poolSize = hikari.getMaximumPoolSize();
+        if (maxConcurrency <= 0) {
+            if (poolSize < 2) {
+                throw new IllegalStateException("spring.datasource.hikari.maximum-pool-size must be at least 2, saves can need two connections");
+            }
+            return poolSize - 1;
+        }
+        if (maxConcurrency >= poolSize) {
+            throw new IllegalStateException("rule-engine.jdbc.max-concurrency (" + maxConcurrency
+                    + ") must be below spring.datasource.hikari.maximum-pool-size (" + poolSize + ")");
+        }
+        return maxConcurrency;
+    }
+
+    public <T> T call(Supplier<T> query) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database permit", e);
+        }
+        try {
+            return query.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(Runnable query) {
+        call(() -> {
+            query.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package rule_engine.rule_engine.repositories;
+
+import org.springframework.data.domain.Limit;
+import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleSummary;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// The MySQL-backed store, a thin layer over RuleRepository. Every call holds a JdbcLimiter permit.
+public class JpaRuleStore implements RuleStore {
+
+    private final RuleRepository ruleRepository;
+    private final JdbcLimiter jdbc;
+
+    public JpaRuleStore(RuleRepository ruleRepository, JdbcLimiter jdbc) {
+        this.ruleRepository = ruleRepository;
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public Rule save(Rule rule) {
+        return jdbc.call(() -> ruleRepository.save(rule));
+    }
+
+    @Override
+    public List<Rule> saveAll(List<Rule> rules) {
+        return jdbc.call(() -> ruleRepository.saveAll(rules));
+    }
+
+    @Override
+    public Optional<Rule> findById(Long id) {
+        return jdbc.call(() -> ruleRepository.findById(id));
+    }
+
+    @Override
+    public List<Rule> findAllById(Collection<Long> ids) {
+        return jdbc.call(() -> ruleRepository.findAllById(ids));
+    }
+
+    @Override
+    public List<Rule> findAll() {
+        return jdbc.call(ruleRepository::findAll);
+    }
+
+    @Override
+    public List<Rule> findPageAfter(long after, int limit) {
+        return jdbc.call(() -> ruleRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(limit)));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return jdbc.call(() -> ruleRepository.existsById(id));
+    }
+
+    @Override
+    public List<Long> findAllIds() {
+        return jdbc.call(ruleRepository::findAllIds);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        jdbc.run(() -> ruleRepository.deleteById(id));
+    }
+
+    @Override
+    public List<RuleSummary> findSummariesAfter(long after, int limit, boolean includeRuleString) {
+        return jdbc.call(() -> includeRuleString
+                ? ruleRepository.findSummariesWithRuleStringAfter(after, Limit.of(limit))
+                : ruleRepository.findSummariesAfter(after, Limit.of(limit)));
+    }
+}
@@ -1,7 +1,43 @@
 package rule_engine.rule_engine.repositories;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleSummary;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface RuleRepository extends JpaRepository<Rule, Long> {
-}
\ No newline at end of file
+
+    // Callers of these want the ASTs, so fetch the lazy columns in the same select instead of one more per row
+    @Override
+    @EntityGraph(attributePaths = {"ruleString", "ast", "legacyAst"})
+    List<Rule> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"ruleString", "ast", "legacyAst"})
+    Optional<Rule> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = {"ruleString", "ast", "legacyAst"})
+    List<Rule> findAllById(Iterable<Long> ids);
+
+    // Keyset pagination: the page after the given id, in id order
+    @EntityGraph(attributePaths = {"ruleString", "ast", "legacyAst"})
+    List<Rule> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    @Query("select r.id from Rule r order by r.id")
+    List<Long> findAllIds();
+
+    @Query("select new rule_engine.rule_engine.models.RuleSummary(r.id, r.description) "
+            + "from Rule r where r.id > :after order by r.id")
+    List<RuleSummary> findSummariesAfter(@Param("after") long after, Limit limit);
+
+    @Query("select new rule_engine.rule_engine.models.RuleSummary(r.id, r.description, r.ruleString) "
+            + "from Rule r where r.id > :after order by r.id")
+    List<RuleSummary> findSummariesWithRuleStringAfter(@Param("after") long after, Limit limit);
+}
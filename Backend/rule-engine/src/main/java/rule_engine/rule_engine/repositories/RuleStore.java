@@ -0,0 +1,38 @@
+package rule_engine.rule_engine.repositories;
+
+import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleSummary;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// Where rules are kept. RulesService only talks to this; rule-engine.store picks the implementation:
+//  - jpa (default): MySQL through RuleRepository
+//  - file: FileRuleStore, an embedded append-only log + snapshot on local disk, no database needed
+// findById/findAll return rules with their ASTs; save assigns an id to new rules.
+public interface RuleStore {
+
+    Rule save(Rule rule);
+
+    List<Rule> saveAll(List<Rule> rules);
+
+    Optional<Rule> findById(Long id);
+
+    // The rules with these ids that exist, in no particular order, in one round trip
+    List<Rule> findAllById(Collection<Long> ids);
+
+    List<Rule> findAll();
+
+    boolean existsById(Long id);
+
+    // Every rule id in id order, without loading the rules
+    List<Long> findAllIds();
+
+    void deleteById(Long id);
+
+    // Keyset pagination: up to limit rules with id > after, in id order
+    List<Rule> findPageAfter(long after, int limit);
+
+    List<RuleSummary> findSummariesAfter(long after, int limit, boolean includeRuleString);
+}
@@ -0,0 +1,127 @@
+package rule_engine.rule_engine.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Meters for the rule engine's hot paths, exported at /actuator/prometheus.
+// Everything is registered once and kept in fields/maps, so recording is a map lookup plus the timer update,
+// no registry lookups or tag building per call.
+//
+// Per-rule evaluation latency is tagged with the rule id for the first max-tagged-rules rules we see
+// (a deleted rule frees its slot); everything after that shares rule="other", so a big rule set can't
+// blow up the number of series. Those histograms use a fixed handful of buckets for the same reason.
+// Repository call latency comes from Spring Boot's own spring.data.repository.invocations timer.
+@Component
+public class RuleMetrics {
+
+    private static final String OTHER = "other";
+    private static final Set<String> ERROR_CAUSES = Set.of("InvalidConditionException", "InvalidRuleException");
+    private static final List<String> OPERATIONS = List.of("parse", "combine", "evaluate");
+    private static final Duration[] EVALUATION_BUCKETS = {
+            Duration.ofNanos(1_000), Duration.ofNanos(10_000), Duration.ofNanos(100_000),
+            Duration.ofMillis(1), Duration.ofMillis(10), Duration.ofMillis(100)};
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${rule-engine.metrics.max-tagged-rules:100}")
+    private int maxTaggedRules;
+
+    private Timer parseTimer;
+    private Timer combineTimer;
+    private Timer batchTimer;
+    private Timer streamTimer;
+    private Timer otherRulesTimer;
+    private final Map<Long, Timer> ruleTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        parseTimer = Timer.builder("rules.parse").description("RuleParser.parseExpression").register(registry);
+        combineTimer = Timer.builder("rules.combine").description("Combining rules into one AST").register(registry);
+        batchTimer = Timer.builder("rules.evaluate.batch").description("Whole batch evaluations").register(registry);
+        streamTimer = Timer.builder("rules.evaluate.stream").description("Whole NDJSON stream evaluations").register(registry);
+        otherRulesTimer = evaluationTimer(OTHER);
+        for (String operation : OPERATIONS) {
+            for (String cause : ERROR_CAUSES) errorCounters.put(operation + cause, errorCounter(operation, cause));
+            errorCounters.put(operation + OTHER, errorCounter(operation, OTHER));
+        }
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public Timer parse() {
+        return parseTimer;
+    }
+
+    public Timer combine() {
+        return combineTimer;
+    }
+
+    public Timer batch() {
+        return batchTimer;
+    }
+
+    public Timer stream() {
+        return streamTimer;
+    }
+
+    public void recordEvaluation(Long ruleId, long nanos) {
+        evaluationTimerFor(ruleId).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // operation is one of parse/combine/evaluate. Batch failures come wrapped ("Record i: ..."),
+    // so look at the causes too.
+    public void recordError(String operation, Throwable error) {
+        Throwable cause = error;
+        while (cause != null && !ERROR_CAUSES.contains(cause.getClass().getSimpleName())) {
+            cause = cause.getCause();
+        }
+        errorCounters.get(operation + (cause == null ? OTHER : cause.getClass().getSimpleName())).increment();
+    }
+
+    // Frees the rule's tag slot when it's deleted
+    public void forgetRule(Long ruleId) {
+        Timer timer = ruleTimers.remove(ruleId);
+        if (timer != null) registry.remove(timer);
+    }
+
+    private Timer evaluationTimerFor(Long ruleId) {
+        if (ruleId == null) return otherRulesTimer;
+        Timer timer = ruleTimers.get(ruleId);
+        if (timer != null) return timer;
+        // Slightly racy on the limit, which is fine - it only needs to be bounded, not exact
+        if (ruleTimers.size() >= maxTaggedRules) return otherRulesTimer;
+        return ruleTimers.computeIfAbsent(ruleId, id -> evaluationTimer(id.toString()));
+    }
+
+    private Timer evaluationTimer(String rule) {
+        return Timer.builder("rules.evaluate")
+                .description("Single record evaluations, by rule")
+                .tag("rule", rule)
+                .serviceLevelObjectives(EVALUATION_BUCKETS)
+                .register(registry);
+    }
+
+    private Counter errorCounter(String operation, String cause) {
+        return Counter.builder("rules.errors")
+                .description("Parse/combine/evaluation failures, by cause")
+                .tag("operation", operation)
+                .tag("cause", cause)
+                .register(registry);
+    }
+}
@@ -0,0 +1,179 @@
+package rule_engine.rule_engine.services;
+
+import lombok.Getter;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleNetwork;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// One version of the whole rule set: every rule's AST plus the condition network built over them.
+// Never changes once built. Writers make the next version with withRules/withoutRule and publish it
+// (see RulesService), so a reader holding a snapshot always sees one consistent set, however many
+// creates and deletes land while it's evaluating.
+//
+// The id -> AST map is split into SHARDS copy-on-write shards by id. A new version shares every shard with
+// the previous one except those its changes land in, so a write copies about rules / SHARDS entries plus
+// the shard array rather than the whole map. Bulk creates go in as one version.
+//
+// The network isn't built with the version: RulesService builds it in the background for the newest
+// version, and /match answers from the newest version that has one, so readers never wait for a build.
+public final class RuleSetSnapshot {
+
+    private static final int SHARDS = 256;
+    private static final RuleSetSnapshot EMPTY = new RuleSetSnapshot(0, emptyShards(), 0);
+
+    @Getter
+    private final long version;
+    // Never modified once the snapshot is built; shards are shared between versions
+    private final Map<Long, Node>[] shards;
+    private final int size;
+    // Read-only view over all shards, for the network build and callers that want the whole map
+    private final Map<Long, Node> asts = new ShardedView();
+    // Set once by buildNetwork
+    private volatile RuleNetwork network;
+
+    private RuleSetSnapshot(long version, Map<Long, Node>[] shards, int size) {
+        this.version = version;
+        this.shards = shards;
+        this.size = size;
+    }
+
+    public static RuleSetSnapshot empty() {
+        return EMPTY;
+    }
+
+    // The next version with these rules added (or replaced)
+    public RuleSetSnapshot withRules(Map<Long, Node> rules) {
+        return withChanges(rules, List.of());
+    }
+
+    public RuleSetSnapshot withoutRule(Long id) {
+        return withChanges(Map.of(), List.of(id));
+    }
+
+    // Both at once, as one version. Returns this if nothing would change.
+    public RuleSetSnapshot withChanges(Map<Long, Node> added, Collection<Long> removed) {
+        if (added.isEmpty() && removed.stream().noneMatch(this::contains)) return this;
+        Map<Long, Node>[] next = shards.clone();
+        boolean[] copied = new boolean[SHARDS];
+        int nextSize = size;
+        for (Long id : removed) {
+            int shard = shard(id);
+            if (next[shard].containsKey(id)) {
+                copy(next, copied, shard).remove(id);
+                nextSize--;
+            }
+        }
+        for (Map.Entry<Long, Node> rule : added.entrySet()) {
+            Map<Long, Node> shard = copy(next, copied, shard(rule.getKey()));
+            if (!shard.containsKey(rule.getKey())) nextSize++;
+            shard.put(rule.getKey(), rule.getValue());
+        }
+        return new RuleSetSnapshot(version + 1, next, nextSize);
+    }
+
+    // null if the rule isn't part of this version
+    public Node getAst(Long id) {
+        return shards[shard(id)].get(id);
+    }
+
+    public boolean contains(Long id) {
+        return shards[shard(id)].containsKey(id);
+    }
+
+    public Set<Long> ids() {
+        return asts.keySet();
+    }
+
+    public Collection<Node> asts() {
+        return asts.values();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Every rule of this version that matches the record. A version without a network builds it here
+    // first; RulesService only matches against versions it has already built.
+    public List<Long> match(Map<String, Object> context) {
+        return buildNetwork().match(context);
+    }
+
+    boolean hasNetwork() {
+        return network != null;
+    }
+
+    // Not locked: two threads racing here both build it and one of the (identical) networks wins
+    RuleNetwork buildNetwork() {
+        RuleNetwork built = network;
+        if (built == null) {
+            built = RuleNetwork.build(version, asts);
+            network = built;
+        }
+        return built;
+    }
+
+    private static int shard(Long id) {
+        return Long.hashCode(id) & (SHARDS - 1);
+    }
+
+    // The shard, copied the first time this write touches it
+    private static Map<Long, Node> copy(Map<Long, Node>[] shards, boolean[] copied, int shard) {
+        if (!copied[shard]) {
+            shards[shard] = new HashMap<>(shards[shard]);
+            copied[shard] = true;
+        }
+        return shards[shard];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Node>[] emptyShards() {
+        Map<Long, Node>[] shards = new Map[SHARDS];
+        Arrays.fill(shards, Map.of());
+        return shards;
+    }
+
+    private final class ShardedView extends AbstractMap<Long, Node> {
+
+        @Override
+        public Node get(Object key) {
+            return key instanceof Long id ? getAst(id) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Long id && contains(id);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<Long, Node>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Long, Node>> iterator() {
+                    return Arrays.stream(shards)
+                            .flatMap(shard -> Collections.unmodifiableMap(shard).entrySet().stream())
+                            .iterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package rule_engine.rule_engine.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.CompiledRule;
+import rule_engine.rule_engine.parsers.RuleBytecodeCompiler;
+import rule_engine.rule_engine.parsers.RuleCompiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Optional boot phase so a fresh node answers at steady-state latency from its first request:
+//  1. compiles every rule of the current rule set (loaded from the store just before this runs) in
+//     parallel into the compiled-rule cache, so the first evaluation of a rule doesn't pay for the compile
+//     (the condition network for /match is already built by RulesService.loadRuleSet)
+//  2. runs synthetic evaluations so the JIT has compiled the evaluator before real traffic arrives
+//
+// Spring Boot only reports readiness (ACCEPTING_TRAFFIC at /actuator/health/readiness) once every
+// ApplicationRunner has returned, so while this runs the node stays out of the load balancer.
+// Progress is logged and exported as rules.warmup.rules; the total time as the rules.warmup timer.
+//
+// Synthetic records are built from each rule's own literals, roughly half matching, so both sides of
+// every comparison get exercised. They run on separately compiled copies of the rules: with adaptive
+// reordering on, the cached copies' selectivity stats must only ever see real traffic. The copies are
+// compiled the way live rules are (profiled when adaptive reordering is on), and with bytecode promotion
+// on, generated copies run too, so the JIT sees the same node and class shapes real traffic will. The
+// cache is bounded, so with more rules than rule-engine.cache.max-weight allows, only part of them stay warm.
+@Slf4j
+@Component
+public class RuleWarmup implements ApplicationRunner {
+
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    // Enough distinct rules to cover every node type the rule set uses, without recompiling all of them
+    private static final int SAMPLE_RULES = 1000;
+
+    @Value("${rule-engine.warmup.enabled:false}")
+    private boolean enabled;
+
+    // Rules compiled per step; progress is counted in these
+    @Value("${rule-engine.warmup.page-size:500}")
+    private int pageSize;
+
+    @Value("${rule-engine.warmup.evaluations:200000}")
+    private int evaluations;
+
+    @Value("${rule-engine.adaptive.enabled:false}")
+    private boolean adaptiveEnabled;
+
+    @Value("${rule-engine.bytecode.enabled:false}")
+    private boolean bytecodeEnabled;
+
+    @Autowired
+    private RulesService rulesService;
+
+    @Autowired
+    private ForkJoinPool ruleEvaluationPool;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final AtomicLong compiled = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+        registry.gauge("rules.warmup.rules", compiled);
+        long start = System.nanoTime();
+        log.info("Warm-up: compiling every rule, readiness is held until it's done");
+
+        Random random = new Random(42);
+        List<Node> samples = new ArrayList<>();
+        long total = 0;
+        long lastLog = start;
+        RuleSetSnapshot ruleSet = rulesService.getRuleSet();
+        List<Long> ids = new ArrayList<>(ruleSet.ids());
+        Collections.sort(ids);
+        for (int from = 0; from < ids.size(); from += pageSize) {
+            List<Long> page = ids.subList(from, Math.min(from + pageSize, ids.size()));
+            rulesService.precompile(ruleSet, page);
+            for (Long id : page) {
+                Node ast = ruleSet.getAst(id);
+                if (ast == null) continue;
+                // Reservoir sample, so the synthetic runs see the whole id range and not just its start
+                total++;
+                if (samples.size() < SAMPLE_RULES) {
+                    samples.add(ast);
+                } else {
+                    long slot = (long) (random.nextDouble() * total);
+                    if (slot < SAMPLE_RULES) samples.set((int) slot, ast);
+                }
+            }
+            compiled.addAndGet(page.size());
+            if (System.nanoTime() - lastLog > PROGRESS_LOG_INTERVAL_NANOS) {
+                lastLog = System.nanoTime();
+                log.info("Warm-up: {} rules compiled so far ({} ms)", compiled.get(), (lastLog - start) / 1_000_000);
+            }
+        }
+        long compileNanos = System.nanoTime() - start;
+
+        long evaluated = evaluateSynthetic(samples, random);
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("rules.warmup").description("Startup warm-up").register(registry).record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Warm-up done in {} ms: {} rules compiled in {} ms, then {} synthetic evaluations over {} of them",
+                elapsed / 1_000_000, compiled.get(), compileNanos / 1_000_000, evaluated, samples.size());
+    }
+
+    private long evaluateSynthetic(List<Node> asts, Random random) {
+        if (asts.isEmpty() || evaluations <= 0) return 0;
+        List<CompiledRule> rules = new ArrayList<>();
+        List<List<Map<String, Object>>> records = new ArrayList<>();
+        for (Node ast : asts) {
+            CompiledRule rule = RuleCompiler.compile(null, ast, adaptiveEnabled);
+            List<Map<String, Object>> synthetic = syntheticRecords(ast, random);
+            rules.add(rule);
+            records.add(synthetic);
+            if (bytecodeEnabled) {
+                rules.add(RuleBytecodeCompiler.generate(rule));
+                records.add(synthetic);
+            }
+        }
+
+        return ruleEvaluationPool.submit(() -> IntStream.range(0, evaluations).parallel().filter(i -> {
+            int rule = i % rules.size();
+            List<Map<String, Object>> candidates = records.get(rule);
+            try {
+                rules.get(rule).evaluate(candidates.get((i / rules.size()) % candidates.size()));
+            } catch (RuntimeException e) {
+                // Rules that throw on some inputs are part of steady state too
+            }
+            return true;
+        }).count()).join();
+    }
+
+    // A few records per rule, each attribute set to one of the rule's literals (or a nearby number),
+    // so comparisons come out both ways
+    private static List<Map<String, Object>> syntheticRecords(Node ast, Random random) {
+        Map<String, List<String>> literals = new HashMap<>();
+        collectLiterals(ast, literals);
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<String, Object> record = new HashMap<>();
+            for (Map.Entry<String, List<String>> attribute : literals.entrySet()) {
+                List<String> values = attribute.getValue();
+                String literal = values.get(random.nextInt(values.size()));
+                record.put(attribute.getKey(), syntheticValue(literal, random));
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static Object syntheticValue(String literal, Random random) {
+        try {
+            double number = Double.parseDouble(literal);
+            double value = number + (random.nextBoolean() ? 1 : -1) * random.nextInt(3);
+            return value == Math.rint(value) && Math.abs(value) < Integer.MAX_VALUE ? (Object) (int) value : value;
+        } catch (NumberFormatException e) {
+            return random.nextInt(4) == 0 ? literal + "~" : literal;
+        }
+    }
+
+    private static void collectLiterals(Node node, Map<String, List<String>> literals) {
+        if (node == null) return;
+        if (node.isMembership()) {
+            if (node.value != null) literals.computeIfAbsent(node.value, k -> new ArrayList<>()).addAll(node.getLiterals());
+            return;
+        }
+        if ("operand".equals(node.type) && node.operator != null && node.value != null) {
+            int idx = node.value.indexOf(node.operator);
+            if (idx > 0) {
+                String variable = node.value.substring(0, idx).trim();
+                String literal = node.value.substring(idx + node.operator.length()).trim();
+                literals.computeIfAbsent(variable, k -> new ArrayList<>()).add(literal);
+            }
+            return;
+        }
+        if ("operator".equals(node.type)) {
+            for (Node operand : node.operands()) collectLiterals(operand, literals);
+        }
+    }
+}
@@ -1,65 +1,688 @@
 package rule_engine.rule_engine.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import rule_engine.rule_engine.models.BulkCreateResult;
+import rule_engine.rule_engine.models.ColumnarBatch;
 import rule_engine.rule_engine.models.Node;
 import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleCreateRequest;
+import rule_engine.rule_engine.models.RuleSummary;
+import rule_engine.rule_engine.parsers.AdaptiveReorderer;
+import rule_engine.rule_engine.parsers.AttributeSchema;
+import rule_engine.rule_engine.parsers.ColumnarEvaluator;
+import rule_engine.rule_engine.parsers.CompiledRule;
+import rule_engine.rule_engine.parsers.EvaluationContext;
+import rule_engine.rule_engine.parsers.RuleBytecodeCompiler;
 import rule_engine.rule_engine.parsers.RuleCombiner;
+import rule_engine.rule_engine.parsers.RuleCompiler;
+import rule_engine.rule_engine.parsers.RuleOptimizer;
 import rule_engine.rule_engine.parsers.RuleParser;
-import rule_engine.rule_engine.repositories.RuleRepository;
+import rule_engine.rule_engine.repositories.RuleStore;
+import rule_engine.rule_engine.utils.NodeInterner;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
+@Slf4j
 @Service
 public class RulesService {
 
+    // Streaming evaluation flushes at least this often so results trickle back during long uploads
+    private static final int STREAM_FLUSH_INTERVAL = 256;
+
+    // Rules read per query when loading the rule set at startup or catching up with other nodes
+    private static final int LOAD_PAGE_SIZE = 1000;
+
     @Autowired
-    private RuleRepository ruleRepository;
+    private RuleStore ruleStore;
 
     @Autowired
     private RuleParser ruleParser;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RuleMetrics metrics;
+
+    // Rules evaluated more than promotionThreshold times get their own generated class
+    @Value("${rule-engine.bytecode.enabled:false}")
+    private boolean bytecodeEnabled;
+
+    @Value("${rule-engine.bytecode.promotion-threshold:1000}")
+    private long promotionThreshold;
+
+    // Bounded by total compiled node count, so a handful of giant combined rules can't crowd out everything else
+    @Value("${rule-engine.cache.max-weight:1000000}")
+    private long cacheMaxWeight;
+
+    private Cache<Long, CompiledRule> compiledRules;
+
+    // Ids recently looked up in the store and not found there, so asking for one over and over doesn't
+    // hit the database every time. Short-lived, since another node may create the rule.
+    @Value("${rule-engine.rule-set.miss-ttl-ms:5000}")
+    private long missTtlMs;
+
+    private Cache<Long, Boolean> missingRules;
+
+    @Autowired
+    private ForkJoinPool ruleEvaluationPool;
+
+    @Value("${rule-engine.batch.chunk-size:1024}")
+    private int batchChunkSize;
+
+    // Rules saved per transaction by bulk create
+    @Value("${rule-engine.bulk.chunk-size:1000}")
+    private int bulkChunkSize;
+
+    // Profile AND/OR children and periodically reorder them by measured selectivity and cost
+    @Value("${rule-engine.adaptive.enabled:false}")
+    private boolean adaptiveEnabled;
+
+    @Value("${rule-engine.adaptive.min-samples:100}")
+    private long adaptiveMinSamples;
+
+    // Only takes effect when the JVM was started with --add-modules jdk.incubator.vector
+    @Value("${rule-engine.columnar.vector-api:true}")
+    private boolean columnarVectorApi;
+
+    // The current rule set. Evaluations read it once and use that snapshot throughout, without locking.
+    // Writers build the next version off to the side and swap it in; the lock only orders writers
+    // among themselves, so two creates can't both start from the same version and lose one rule.
+    private final AtomicReference<RuleSetSnapshot> ruleSet = new AtomicReference<>(RuleSetSnapshot.empty());
+    private final Object ruleSetWriteLock = new Object();
+
+    // The newest version whose condition network is built, which is what /match uses. Networks are built
+    // on their own thread after writes; writes that land while one is being built queue a single rebuild
+    // for whatever the newest version is by then, so a burst of creates costs one or two builds.
+    private final AtomicReference<RuleSetSnapshot> matchable = new AtomicReference<>(RuleSetSnapshot.empty());
+    private final AtomicBoolean networkBuildQueued = new AtomicBoolean();
+    private final ExecutorService networkBuilder = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("rule-network-builder").daemon().factory());
+
+    @PostConstruct
+    void initCache() {
+        compiledRules = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxWeight)
+                .weigher((Long id, CompiledRule rule) -> rule.getWeight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(metrics.registry(), compiledRules, "compiledRules");
+        missingRules = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(missTtlMs))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    // Runs before the ApplicationRunners (warm-up) and before readiness is reported. Holds the write lock
+    // throughout, so a create that sneaks in meanwhile waits and then lands on top of the loaded set.
+    // The network for the loaded set is built right here, so /match is never served an empty one.
+    @EventListener(ApplicationStartedEvent.class)
+    public void loadRuleSet() {
+        long start = System.nanoTime();
+        synchronized (ruleSetWriteLock) {
+            Map<Long, Node> asts = new HashMap<>();
+            long after = 0;
+            while (true) {
+                List<Rule> page = getRulePage(after, LOAD_PAGE_SIZE);
+                for (Rule rule : page) asts.put(rule.getId(), rule.getAst());
+                if (page.size() < LOAD_PAGE_SIZE) break;
+                after = page.get(page.size() - 1).getId();
+            }
+            ruleSet.set(ruleSet.get().withRules(asts));
+        }
+        buildLatestNetwork();
+        log.info("Loaded {} rules in {} ms", ruleSet.get().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void stopNetworkBuilder() {
+        networkBuilder.shutdownNow();
+    }
+
+    // Catches up with creates and deletes made through other nodes sharing the database: rules the store has
+    // and we don't are loaded, rules we have and the store doesn't are dropped, all as one new version.
+    // Only ids that were in the snapshot before the store was read can be dropped, so a rule created here
+    // meanwhile (saved after the read) isn't mistaken for a deleted one. A rule deleted here while its
+    // AST is being fetched can come back until the next refresh.
+    @Scheduled(initialDelayString = "${rule-engine.rule-set.refresh-interval-ms:30000}",
+            fixedDelayString = "${rule-engine.rule-set.refresh-interval-ms:30000}")
+    public void refreshRuleSet() {
+        RuleSetSnapshot before = ruleSet.get();
+        List<Long> stored = ruleStore.findAllIds();
+
+        List<Long> unknown = stored.stream().filter(id -> !before.contains(id)).toList();
+        Map<Long, Node> added = new HashMap<>();
+        for (int from = 0; from < unknown.size(); from += LOAD_PAGE_SIZE) {
+            List<Long> page = unknown.subList(from, Math.min(from + LOAD_PAGE_SIZE, unknown.size()));
+            for (Rule rule : getRulesById(page)) added.put(rule.getId(), rule.getAst());
+        }
+        Set<Long> storedIds = new HashSet<>(stored);
+        List<Long> removed = before.ids().stream().filter(id -> !storedIds.contains(id)).toList();
+        if (added.isEmpty() && removed.isEmpty()) return;
+
+        publish(current -> current.withChanges(added, removed));
+        for (Long id : removed) {
+            compiledRules.invalidate(id);
+            metrics.forgetRule(id);
+        }
+        log.info("Rule set refreshed from the store: {} added, {} removed", added.size(), removed.size());
+    }
+
+    public RuleSetSnapshot getRuleSet() {
+        return ruleSet.get();
+    }
+
+    // What /match answers from: may trail getRuleSet by the writes since the last network build
+    public RuleSetSnapshot getMatchableRuleSet() {
+        return matchable.get();
+    }
+
+    private void publish(UnaryOperator<RuleSetSnapshot> change) {
+        synchronized (ruleSetWriteLock) {
+            ruleSet.set(change.apply(ruleSet.get()));
+        }
+        if (networkBuildQueued.compareAndSet(false, true)) {
+            networkBuilder.execute(this::buildLatestNetwork);
+        }
+    }
+
+    private void buildLatestNetwork() {
+        // Cleared before reading the version, so a write after this point queues another build
+        networkBuildQueued.set(false);
+        RuleSetSnapshot latest = ruleSet.get();
+        if (latest.getVersion() <= matchable.get().getVersion()) return;
+        long start = System.nanoTime();
+        try {
+            latest.buildNetwork();
+        } catch (RuntimeException e) {
+            log.error("Building the condition network for rule set version {} failed", latest.getVersion(), e);
+            return;
+        }
+        matchable.accumulateAndGet(latest, (current, built) -> built.getVersion() > current.getVersion() ? built : current);
+        log.debug("Condition network for rule set version {} ({} rules) built in {} ms",
+                latest.getVersion(), latest.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
     public Rule createRule(String ruleString, String description) {
+        Rule rule = buildRule(ruleString, description);
+        Rule saved = ruleStore.save(rule);
+        compiledRules.invalidate(saved.getId());
+        publish(current -> current.withRules(Map.of(saved.getId(), saved.getAst())));
+        return saved;
+    }
+
+    private Rule buildRule(String ruleString, String description) {
         Rule rule = new Rule();
         rule.setRuleString(ruleString);
         rule.setDescription(description);
 
         // Convert rule string to AST and store it
-        Node ast = RuleParser.parseExpression(ruleString);
+        Node ast = NodeInterner.intern(RuleOptimizer.optimize(parse(ruleString)));
         rule.setAst(ast);
+        return rule;
+    }
+
+    // Creates many rules in one go. Rule strings are parsed in parallel on the evaluation pool, then the
+    // valid ones are saved bulkChunkSize at a time, each chunk in its own transaction with batched inserts.
+    // A rule that doesn't parse, or a chunk that fails to save, only fails those items.
+    public List<BulkCreateResult> createRules(List<RuleCreateRequest> requests) {
+        Rule[] rules = new Rule[requests.size()];
+        BulkCreateResult[] results = new BulkCreateResult[requests.size()];
+        try {
+            ruleEvaluationPool.submit(() -> IntStream.range(0, requests.size()).parallel().forEach(i -> {
+                RuleCreateRequest request = requests.get(i);
+                try {
+                    rules[i] = buildRule(request.getRuleString(), request.getDescription());
+                } catch (RuntimeException e) {
+                    results[i] = new BulkCreateResult(i, null, e.getMessage());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing rules", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to parse rules", e.getCause());
+        }
 
-        return ruleRepository.save(rule);
+        List<Integer> chunk = new ArrayList<>();
+        for (int i = 0; i <= rules.length; i++) {
+            if (i < rules.length && rules[i] != null) chunk.add(i);
+            if (chunk.size() == bulkChunkSize || (i == rules.length && !chunk.isEmpty())) {
+                saveChunk(chunk, rules, results);
+                chunk.clear();
+            }
+        }
+
+        // Everything saved becomes visible at once, as one new version
+        Map<Long, Node> saved = new HashMap<>();
+        for (BulkCreateResult result : results) {
+            if (result.getId() != null) saved.put(result.getId(), rules[result.getIndex()].getAst());
+        }
+        if (!saved.isEmpty()) publish(current -> current.withRules(saved));
+        return Arrays.asList(results);
+    }
+
+    private void saveChunk(List<Integer> indexes, Rule[] rules, BulkCreateResult[] results) {
+        List<Rule> chunk = indexes.stream().map(i -> rules[i]).toList();
+        try {
+            ruleStore.saveAll(chunk);
+            for (int i : indexes) results[i] = new BulkCreateResult(i, rules[i].getId(), null);
+        } catch (RuntimeException e) {
+            for (int i : indexes) results[i] = new BulkCreateResult(i, null, "Could not save: " + e.getMessage());
+        }
     }
 
     public Rule combineRules(List<String> rules) {
-        System.out.println(rules);
+        log.debug("Combining rules {}", rules);
         Rule rule = new Rule();
-        String combinedRule = RuleCombiner.combineRules(rules);
-        rule.setRuleString(combinedRule);
+        // The combiner builds the AST directly; the rule string is printed from it before
+        // optimizing, since a folded-away branch has no rule string form
+        Node combined;
+        long start = System.nanoTime();
+        try {
+            combined = RuleCombiner.combine(rules);
+        } catch (RuntimeException e) {
+            metrics.recordError("combine", e);
+            throw e;
+        } finally {
+            metrics.combine().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        rule.setRuleString(RuleParser.toRuleString(combined));
+        rule.setAst(NodeInterner.intern(RuleOptimizer.optimize(combined)));
+        Rule saved = ruleStore.save(rule);
+        compiledRules.invalidate(saved.getId());
+        publish(current -> current.withRules(Map.of(saved.getId(), saved.getAst())));
+        return saved;
+    }
 
-        Node ast = RuleParser.parseExpression(combinedRule);
-        rule.setAst(ast);
-        return ruleRepository.save(rule);
+    private Node parse(String ruleString) {
+        long start = System.nanoTime();
+        try {
+            return RuleParser.parseExpression(ruleString);
+        } catch (RuntimeException e) {
+            metrics.recordError("parse", e);
+            throw e;
+        } finally {
+            metrics.parse().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
     public Optional<Rule> getRuleById(Long id) {
-        return ruleRepository.findById(id);
+        return ruleStore.findById(id).map(this::migrateLegacyAst);
+    }
+
+    // The rules with these ids that exist, fetched together
+    public List<Rule> getRulesById(Collection<Long> ids) {
+        return migrateLegacyAsts(ruleStore.findAllById(ids));
+    }
+
+    // One page of the listing: rules with id > after, in id order. No ASTs are loaded.
+    public List<RuleSummary> getRuleSummaries(long after, int limit, boolean includeRuleString) {
+        return ruleStore.findSummariesAfter(after, limit, includeRuleString);
+    }
+
+    // One page of full rules (with ASTs) in id order, for loading the rule set
+    public List<Rule> getRulePage(long after, int limit) {
+        return migrateLegacyAsts(ruleStore.findPageAfter(after, limit));
+    }
+
+    // Compiles rules of a snapshot in parallel on the evaluation pool and caches them. putIfAbsent,
+    // so anything cached (or promoted) meanwhile wins.
+    public List<CompiledRule> precompile(RuleSetSnapshot snapshot, List<Long> ids) {
+        List<CompiledRule> compiled = ruleEvaluationPool.submit(() -> ids.parallelStream()
+                .filter(snapshot::contains)
+                .map(id -> RuleCompiler.compile(id, snapshot.getAst(id), adaptiveEnabled))
+                .toList()).join();
+        for (CompiledRule rule : compiled) {
+            compiledRules.asMap().putIfAbsent(rule.getRuleId(), rule);
+        }
+        return compiled;
     }
 
     public List<Rule> getAllRules() {
-        return ruleRepository.findAll();
+        return migrateLegacyAsts(ruleStore.findAll());
+    }
+
+    // The snapshot answers for every rule this node knows about, so evaluating those never goes to the
+    // database; the cache only saves recompiling. Ids are never reused and a rule's AST never changes, so
+    // whatever is cached under an id was compiled from the AST the snapshot has for it.
+    // A miss may be a rule another node just created (several nodes can share one database), so misses
+    // are looked up in the store, all in one query, and whatever is found is published here too, as one
+    // version. Ids the store doesn't have either are remembered for rule-engine.rule-set.miss-ttl-ms.
+    // Deletes on other nodes reach us through refreshRuleSet.
+    // (A reader on an older snapshot can re-cache a rule that was just deleted; it's never served again
+    // and ages out like any other entry.)
+    public Optional<CompiledRule> getCompiledRule(RuleSetSnapshot snapshot, Long id) {
+        return Optional.ofNullable(getCompiledRules(snapshot, List.of(id)).get(id));
+    }
+
+    // Several rules from the same snapshot, in the order asked for. Ids that are in neither the snapshot
+    // nor the store are left out.
+    public Map<Long, CompiledRule> getCompiledRules(RuleSetSnapshot snapshot, Collection<Long> ids) {
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (!snapshot.contains(id) && missingRules.getIfPresent(id) == null) misses.add(id);
+        }
+        Map<Long, Node> found = new HashMap<>();
+        if (!misses.isEmpty()) {
+            for (Rule rule : getRulesById(misses)) found.put(rule.getId(), rule.getAst());
+            for (Long id : misses) {
+                if (!found.containsKey(id)) missingRules.put(id, Boolean.TRUE);
+            }
+            if (!found.isEmpty()) {
+                // Another request may have published some of them meanwhile
+                publish(current -> {
+                    Map<Long, Node> fresh = new HashMap<>(found);
+                    fresh.keySet().removeIf(current::contains);
+                    return current.withRules(fresh);
+                });
+            }
+        }
+
+        Map<Long, CompiledRule> rules = new LinkedHashMap<>();
+        for (Long id : ids) {
+            boolean known = snapshot.contains(id);
+            if (!known && !found.containsKey(id)) continue;
+            Node ast = known ? snapshot.getAst(id) : found.get(id);
+            rules.put(id, compiledRules.get(id, key -> RuleCompiler.compile(key, ast, adaptiveEnabled)));
+        }
+        return rules;
+    }
+
+    // Rows saved before the binary AST column hold their AST as JSON (Rule decodes it on load).
+    // Rewrite them in the binary format the first time we see them, so each is only migrated once.
+    private Rule migrateLegacyAst(Rule rule) {
+        if (!rule.isLegacy()) return rule;
+        rule.migrateLegacyAst();
+        return ruleStore.save(rule);
+    }
+
+    private List<Rule> migrateLegacyAsts(List<Rule> rules) {
+        List<Rule> legacy = rules.stream().filter(Rule::isLegacy).toList();
+        if (legacy.isEmpty()) return rules;
+        legacy.forEach(Rule::migrateLegacyAst);
+        ruleStore.saveAll(legacy);
+        return rules;
     }
 
     public boolean evaluateRule(Rule rule, Map<String, Object> data) {
-        Node ast = rule.getAst();
-        return ruleParser.evaluate(ast, data);
+        return evaluateRule(compileRule(rule), data);
+    }
+
+    public boolean evaluateRule(CompiledRule rule, Map<String, Object> data) {
+        try (EvaluationContext context = EvaluationContext.forThread(data)) {
+            return evaluateRule(rule, context);
+        }
+    }
+
+    private boolean evaluateRule(CompiledRule rule, EvaluationContext data) {
+        long start = System.nanoTime();
+        try {
+            return tierUp(rule, 1).evaluate(data);
+        } catch (RuntimeException e) {
+            metrics.recordError("evaluate", e);
+            throw e;
+        } finally {
+            metrics.recordEvaluation(rule.getRuleId(), System.nanoTime() - start);
+        }
+    }
+
+    // One record against several rules, results keyed by rule id in the order asked for.
+    // The record is converted to slots once and shared by all of them.
+    public Map<Long, Boolean> evaluateRules(Map<Long, CompiledRule> rules, Map<String, Object> data) {
+        Map<Long, Boolean> results = new LinkedHashMap<>();
+        try (EvaluationContext context = EvaluationContext.forThread(data)) {
+            for (Map.Entry<Long, CompiledRule> rule : rules.entrySet()) {
+                results.put(rule.getKey(), evaluateRule(rule.getValue(), context));
+            }
+        }
+        return results;
+    }
+
+    // One rule against many records. Small batches run on the calling thread,
+    // bigger ones are split into chunks across the evaluation pool.
+    public boolean[] evaluateBatch(CompiledRule rule, List<Map<String, Object>> records) {
+        CompiledRule compiled = tierUp(rule, records.size());
+        boolean[] results = new boolean[records.size()];
+        BatchTask task = new BatchTask(compiled, records, results, 0, records.size(), Math.max(1, batchChunkSize));
+        long start = System.nanoTime();
+        try {
+            if (records.size() <= batchChunkSize) {
+                task.compute();
+            } else {
+                invokeOnPool(task);
+            }
+        } catch (RuntimeException e) {
+            metrics.recordError("evaluate", e);
+            throw e;
+        } finally {
+            metrics.batch().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return results;
+    }
+
+    // A task that fails on a worker comes back to the caller as a copy of the exception wrapping the original,
+    // so its message would read "java.lang.IllegalArgumentException: Record 7: ..."; pass the original on
+    private void invokeOnPool(ForkJoinTask<?> task) {
+        try {
+            ruleEvaluationPool.invoke(task);
+        } catch (RuntimeException e) {
+            if (e.getCause() != null && e.getCause().getClass() == e.getClass()) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    // Reads newline-delimited JSON records one at a time and writes one result line per record as it goes,
+    // so memory stays flat however big the input is. Writes block when the client stops reading, and we
+    // don't read the next record until the previous result is written - that's our backpressure.
+    // Returns the number of records processed.
+    public long evaluateStream(CompiledRule rule, InputStream input, OutputStream output) throws IOException {
+        CompiledRule current = rule;
+        long index = 0;
+        long start = System.nanoTime();
+        try (MappingIterator<Map<String, Object>> records = objectMapper.readerFor(Map.class).readValues(input);
+             JsonGenerator out = objectMapper.getFactory().createGenerator(output)) {
+            out.setRootValueSeparator(null);
+            while (true) {
+                Map<String, Object> record;
+                try {
+                    if (!records.hasNextValue()) break;
+                    record = records.nextValue();
+                } catch (JsonProcessingException e) {
+                    // Can't resync after malformed JSON, so report where we stopped and give up
+                    writeStreamResult(out, index, null, "Malformed record: " + e.getOriginalMessage());
+                    break;
+                }
+
+                try {
+                    current = tierUp(current, 1);
+                    writeStreamResult(out, index, current.evaluate(record), null);
+                } catch (RuntimeException e) {
+                    metrics.recordError("evaluate", e);
+                    // Some exceptions carry no message; the class name still says more than "error": null
+                    writeStreamResult(out, index, null, e.getMessage() != null ? e.getMessage() : e.toString());
+                }
+                index++;
+
+                if (index % STREAM_FLUSH_INTERVAL == 0) {
+                    out.flush();
+                }
+            }
+        } finally {
+            metrics.stream().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return index;
+    }
+
+    private static void writeStreamResult(JsonGenerator out, long index, Boolean result, String error) throws IOException {
+        out.writeStartObject();
+        out.writeNumberField("index", index);
+        if (error == null) {
+            out.writeBooleanField("result", result);
+        } else {
+            out.writeStringField("error", error);
+        }
+        out.writeEndObject();
+        out.writeRaw('\n');
+    }
+
+    // Column-at-a-time evaluation; bit i of the result is record i
+    public long[] evaluateColumnar(CompiledRule rule, ColumnarBatch batch) {
+        return ColumnarEvaluator.evaluate(rule, batch, columnarVectorApi);
+    }
+
+    private static class BatchTask extends RecursiveAction {
+        private final CompiledRule rule;
+        private final List<Map<String, Object>> records;
+        private final boolean[] results;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        BatchTask(CompiledRule rule, List<Map<String, Object>> records, boolean[] results, int from, int to, int chunkSize) {
+            this.rule = rule;
+            this.records = records;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        results[i] = rule.evaluate(records.get(i));
+                    } catch (RuntimeException e) {
+                        throw new IllegalArgumentException("Record " + i + ": " + e.getMessage(), e);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(rule, records, results, from, mid, chunkSize),
+                    new BatchTask(rule, records, results, mid, to, chunkSize));
+        }
+    }
+
+    // Counts evaluations towards bytecode promotion and hands back whichever tier should run them
+    private CompiledRule tierUp(CompiledRule rule, int evaluations) {
+        if (!bytecodeEnabled || rule.getRuleId() == null || rule.isBytecode()) {
+            return rule;
+        }
+        long total = rule.recordEvaluations(evaluations);
+        if (total >= promotionThreshold && total - evaluations < promotionThreshold) {
+            return promote(rule);
+        }
+        return rule;
+    }
+
+    // Swaps the cached entry for the generated class. If generation fails we get the same
+    // instance back, which is already past the threshold so we won't retry.
+    private CompiledRule promote(CompiledRule rule) {
+        CompiledRule generated = RuleBytecodeCompiler.generate(rule);
+        if (generated != rule) {
+            compiledRules.asMap().replace(rule.getRuleId(), rule, generated);
+        }
+        return generated;
+    }
+
+    // Every rule of the snapshot that matches the record, via its shared condition network.
+    // Pass getMatchableRuleSet(), whose network is already built.
+    public List<Long> matchRules(RuleSetSnapshot snapshot, Map<String, Object> data) {
+        return snapshot.match(data);
+    }
+
+    // Parses every operand of the AST once up front; RuleParser.evaluate would do it on every call
+    public CompiledRule compileRule(Rule rule) {
+        return RuleCompiler.compile(rule.getId(), rule.getAst(), adaptiveEnabled);
+    }
+
+    // Swaps in reordered trees for cached rules whose stats say a different order is cheaper.
+    // replace() only succeeds if nobody promoted/invalidated the entry in the meantime.
+    @Scheduled(fixedDelayString = "${rule-engine.adaptive.interval-ms:60000}")
+    public void reorderRules() {
+        if (!adaptiveEnabled) return;
+        for (Map.Entry<Long, CompiledRule> entry : compiledRules.asMap().entrySet()) {
+            CompiledRule reordered = AdaptiveReorderer.reorder(entry.getValue(), adaptiveMinSamples);
+            if (reordered != entry.getValue()) {
+                compiledRules.asMap().replace(entry.getKey(), entry.getValue(), reordered);
+            }
+        }
+    }
+
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = compiledRules.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", compiledRules.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictedWeight", stats.evictionWeight());
+        return result;
+    }
+
+    public Map<String, List<String>> getSchema() {
+        AttributeSchema schema = AttributeSchema.get();
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        result.put("numeric", schema.numericAttributes());
+        result.put("string", schema.stringAttributes());
+        return result;
+    }
+
+    public Map<String, Object> getInternStats() {
+        return NodeInterner.stats();
     }
 
     public boolean deleteRuleById(Long id) {
-        if (ruleRepository.existsById(id)) {
-            ruleRepository.deleteById(id);
+        if (ruleStore.existsById(id)) {
+            ruleStore.deleteById(id);
+            publish(current -> current.withoutRule(id));
+            compiledRules.invalidate(id);
+            metrics.forgetRule(id);
             return true;
         }
         return false;
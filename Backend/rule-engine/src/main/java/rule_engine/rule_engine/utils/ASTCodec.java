@@ -0,0 +1,330 @@
+package rule_engine.rule_engine.utils;
+
+import rule_engine.rule_engine.models.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary form of a rule AST, used for the ast_binary column.
+//
+// Layout: magic, format version, string table, then the tree as a preorder opcode stream.
+//  - string table: varint count, then each string as varint byte length + UTF-8. Attribute names and
+//    string literals are written once per rule and referenced by index afterwards
+//  - AND/OR: one opcode byte, followed by left and right, or for n-ary nodes (children instead of
+//    left/right) an opcode byte, a varint operand count and the operands
+//  - condition: opcode byte, comparison operator byte, attribute index, then the literal pre-typed:
+//    a zigzag varint for integers, 8 raw bytes for doubles, or a string table index
+//  - IN / NOT IN: opcode byte, attribute index, varint value count, then the values typed like literals
+//  - anything that doesn't fit those shapes is written as RAW (type/operator/value as nullable
+//    string indexes, left, right, then children) so decode(encode(node)) always gives back exactly
+//    what we were handed
+//
+// Version 1 had no n-ary opcodes and no children in RAW nodes, version 2 no membership opcodes;
+// we still read both.
+//
+// Literals are only typed when printing them back gives the identical text ("30" yes, "030" no),
+// so the value string is reproduced byte for byte.
+public final class ASTCodec {
+
+    private static final byte MAGIC = (byte) 0xA5;
+    static final byte VERSION = 3;
+
+    private static final int NULL = 0, AND = 1, OR = 2, CONDITION = 3, RAW = 4, AND_N = 5, OR_N = 6, IN = 7, NOT_IN = 8;
+    private static final int LITERAL_LONG = 0, LITERAL_DOUBLE = 1, LITERAL_STRING = 2;
+    private static final String[] OPERATORS = {">", "<", "=", ">=", "<=", "!="};
+
+    private ASTCodec() {
+    }
+
+    // Cheap check so callers can tell binary rows from legacy JSON ones
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Node node) {
+        Writer tree = new Writer();
+        tree.node(node);
+
+        Writer out = new Writer();
+        out.bytes.write(MAGIC);
+        out.bytes.write(VERSION);
+        out.varint(tree.strings.size());
+        for (String s : tree.strings) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            out.varint(utf8.length);
+            out.bytes.write(utf8, 0, utf8.length);
+        }
+        out.bytes.write(tree.bytes.toByteArray(), 0, tree.bytes.size());
+        return out.bytes.toByteArray();
+    }
+
+    public static Node decode(byte[] data) {
+        if (!isEncoded(data)) {
+            throw new IllegalArgumentException("Not a binary AST");
+        }
+        if (data[1] < 1 || data[1] > VERSION) {
+            throw new IllegalArgumentException("Unsupported binary AST version " + data[1]);
+        }
+        Reader in = new Reader(data, 2, data[1]);
+        String[] strings = new String[in.varint()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.varint();
+            strings[i] = new String(data, in.position, length, StandardCharsets.UTF_8);
+            in.position += length;
+        }
+        in.strings = strings;
+        Node node = in.node();
+        if (in.position != data.length) {
+            throw new IllegalArgumentException("Trailing bytes after binary AST");
+        }
+        return node;
+    }
+
+    private static class Writer {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> stringIds = new HashMap<>();
+
+        void node(Node node) {
+            if (node == null) {
+                bytes.write(NULL);
+                return;
+            }
+            if ("operator".equals(node.type) && node.value == null && ("AND".equals(node.operator) || "OR".equals(node.operator))) {
+                boolean and = "AND".equals(node.operator);
+                if (node.children == null) {
+                    bytes.write(and ? AND : OR);
+                    node(node.left);
+                    node(node.right);
+                    return;
+                }
+                if (node.left == null && node.right == null) {
+                    bytes.write(and ? AND_N : OR_N);
+                    varint(node.children.size());
+                    for (Node child : node.children) node(child);
+                    return;
+                }
+            }
+            if (isPlainMembership(node)) {
+                bytes.write("IN".equals(node.operator) ? IN : NOT_IN);
+                varint(string(node.value));
+                varint(node.children.size());
+                for (Node child : node.children) literal(child.value);
+                return;
+            }
+            int operator = operatorCode(node.operator);
+            int split = node.value == null || operator < 0 ? -1 : node.value.indexOf(node.operator);
+            if ("operand".equals(node.type) && split >= 0 && node.left == null && node.right == null && node.children == null) {
+                bytes.write(CONDITION);
+                bytes.write(operator);
+                varint(string(node.value.substring(0, split)));
+                literal(node.value.substring(split + node.operator.length()));
+                return;
+            }
+            bytes.write(RAW);
+            nullableString(node.type);
+            nullableString(node.operator);
+            nullableString(node.value);
+            node(node.left);
+            node(node.right);
+            // 0 = no children list, otherwise size + 1
+            varint(node.children == null ? 0 : node.children.size() + 1);
+            if (node.children != null) {
+                for (Node child : node.children) node(child);
+            }
+        }
+
+        // Exactly what Node.membership builds, so nothing is lost by writing only the values
+        private static boolean isPlainMembership(Node node) {
+            if (!node.isMembership() || node.value == null || node.left != null || node.right != null
+                    || !("IN".equals(node.operator) || "NOT IN".equals(node.operator))) {
+                return false;
+            }
+            for (Node child : node.children) {
+                if (child == null || !"literal".equals(child.type) || child.operator != null || child.value == null
+                        || child.left != null || child.right != null || child.children != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void literal(String literal) {
+            if (!couldBeNumber(literal)) {
+                bytes.write(LITERAL_STRING);
+                varint(string(literal));
+                return;
+            }
+            try {
+                long l = Long.parseLong(literal);
+                if (Long.toString(l).equals(literal)) {
+                    bytes.write(LITERAL_LONG);
+                    varlong((l << 1) ^ (l >> 63));
+                    return;
+                }
+            } catch (NumberFormatException ignored) {
+                // not an integer
+            }
+            try {
+                double d = Double.parseDouble(literal);
+                if (Double.toString(d).equals(literal)) {
+                    bytes.write(LITERAL_DOUBLE);
+                    long bits = Double.doubleToRawLongBits(d);
+                    for (int shift = 56; shift >= 0; shift -= 8) bytes.write((int) (bits >>> shift));
+                    return;
+                }
+            } catch (NumberFormatException ignored) {
+                // not a double either
+            }
+            bytes.write(LITERAL_STRING);
+            varint(string(literal));
+        }
+
+        // Throwing NumberFormatException for every department name is far slower than the rest of encoding,
+        // so only try to parse things made of the characters Long/Double.toString can print
+        private static boolean couldBeNumber(String literal) {
+            if (literal.isEmpty()) return false;
+            if (literal.equals("NaN") || literal.endsWith("Infinity")) return true;
+            for (int i = 0; i < literal.length(); i++) {
+                if ("0123456789-.E".indexOf(literal.charAt(i)) < 0) return false;
+            }
+            return true;
+        }
+
+        // 0 = null, otherwise string index + 1
+        void nullableString(String s) {
+            varint(s == null ? 0 : string(s) + 1);
+        }
+
+        int string(String s) {
+            return stringIds.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        void varint(int value) {
+            varlong(value & 0xFFFFFFFFL);
+        }
+
+        void varlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            bytes.write((int) value);
+        }
+    }
+
+    private static class Reader {
+        final byte[] data;
+        final int version;
+        int position;
+        String[] strings;
+
+        Reader(byte[] data, int position, int version) {
+            this.data = data;
+            this.position = position;
+            this.version = version;
+        }
+
+        Node node() {
+            int opcode = data[position++];
+            switch (opcode) {
+                case NULL:
+                    return null;
+                case AND:
+                case OR: {
+                    Node node = new Node("operator", opcode == AND ? "AND" : "OR", null);
+                    node.left = node();
+                    node.right = node();
+                    return node;
+                }
+                case AND_N:
+                case OR_N: {
+                    Node node = new Node("operator", opcode == AND_N ? "AND" : "OR", null);
+                    node.children = children(varint());
+                    return node;
+                }
+                case CONDITION: {
+                    String operator = OPERATORS[data[position++]];
+                    String variable = strings[varint()];
+                    return new Node("operand", operator, variable + operator + literal());
+                }
+                case IN:
+                case NOT_IN: {
+                    String variable = strings[varint()];
+                    List<String> values = new ArrayList<>();
+                    for (int count = varint(); count > 0; count--) values.add(literal());
+                    return Node.membership(variable, opcode == IN ? "IN" : "NOT IN", values);
+                }
+                case RAW: {
+                    Node node = new Node(nullableString(), nullableString(), nullableString());
+                    node.left = node();
+                    node.right = node();
+                    if (version >= 2) {
+                        int count = varint();
+                        node.children = count == 0 ? null : children(count - 1);
+                    }
+                    return node;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown opcode " + opcode + " at byte " + (position - 1));
+            }
+        }
+
+        List<Node> children(int count) {
+            List<Node> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) children.add(node());
+            return children;
+        }
+
+        String literal() {
+            int kind = data[position++];
+            switch (kind) {
+                case LITERAL_LONG: {
+                    long zigzag = varlong();
+                    return Long.toString((zigzag >>> 1) ^ -(zigzag & 1));
+                }
+                case LITERAL_DOUBLE: {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) bits = (bits << 8) | (data[position++] & 0xFF);
+                    return Double.toString(Double.longBitsToDouble(bits));
+                }
+                case LITERAL_STRING:
+                    return strings[varint()];
+                default:
+                    throw new IllegalArgumentException("Unknown literal kind " + kind + " at byte " + (position - 1));
+            }
+        }
+
+        String nullableString() {
+            int id = varint();
+            return id == 0 ? null : strings[id - 1];
+        }
+
+        int varint() {
+            return (int) varlong();
+        }
+
+        long varlong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+    }
+
+    private static int operatorCode(String operator) {
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (OPERATORS[i].equals(operator)) return i;
+        }
+        return -1;
+    }
+}
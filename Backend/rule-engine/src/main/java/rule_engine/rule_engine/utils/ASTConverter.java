@@ -3,27 +3,49 @@ package rule_engine.rule_engine.utils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.AttributeConverter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.Converter;
 import rule_engine.rule_engine.models.Node;
 
+import java.util.concurrent.TimeUnit;
+
+// Stores the AST in the compact ASTCodec format. Rows written before that still have the
+// AST as JSON text; fromJson is kept around to read those (see Rule.legacyAst).
+// Either way the loaded tree goes through NodeInterner, so rules share their common subtrees.
+// Hibernate creates converters itself, so decode time goes to the global registry (Spring Boot
+// adds its registry to it) rather than an injected one.
 @Converter(autoApply = true)
-public class ASTConverter implements AttributeConverter<Node, String> {
+public class ASTConverter implements AttributeConverter<Node, byte[]> {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Timer decodeTimer = Timer.builder("rules.ast.decode")
+            .description("Decoding + interning a stored AST")
+            .register(Metrics.globalRegistry);
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Override
+    public byte[] convertToDatabaseColumn(Node attribute) {
+        return attribute == null ? null : ASTCodec.encode(attribute);
+    }
 
     @Override
-    public String convertToDatabaseColumn(Node attribute) {
+    public Node convertToEntityAttribute(byte[] dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        long start = System.nanoTime();
         try {
-            return objectMapper.writeValueAsString(attribute);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Could not serialize AST", e);
+            return NodeInterner.intern(ASTCodec.decode(dbData));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Could not deserialize AST", e);
+        } finally {
+            decodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
-    @Override
-    public Node convertToEntityAttribute(String dbData) {
+    public static Node fromJson(String json) {
         try {
-            return objectMapper.readValue(dbData, Node.class);
+            return NodeInterner.intern(objectMapper.readValue(json, Node.class));
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Could not deserialize AST", e);
         }
@@ -0,0 +1,180 @@
+package rule_engine.rule_engine.utils;
+
+import rule_engine.rule_engine.models.Node;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hash-consing for rule ASTs: structurally identical subtrees (age>30, department=Sales...) across every
+// loaded rule end up as one shared Node instance instead of a copy per rule.
+//
+// Trees are interned bottom-up, so by the time we look at a node its children are already canonical and
+// the pool key only needs their identities - no deep equals/hashCode. Entries are weak: once no rule
+// references a canonical node any more, the GC clears it and the entry is dropped on the next intern call.
+//
+// Interned nodes are shared between rules, so treat them as read-only. Nothing mutates an AST after
+// parsing/decoding today; keep it that way.
+public final class NodeInterner {
+
+    // Rough shallow sizes with compressed oops, only used for the bytes-saved estimate
+    private static final int NODE_BYTES = 40;
+    private static final int STRING_BYTES = 24 + 16;
+    private static final int LIST_BYTES = 24 + 16;
+
+    private static final Map<Key, CanonicalRef> pool = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Node> cleared = new ReferenceQueue<>();
+
+    private static final AtomicLong internedNodes = new AtomicLong();
+    private static final AtomicLong sharedNodes = new AtomicLong();
+    private static final AtomicLong bytesSaved = new AtomicLong();
+
+    private NodeInterner() {
+    }
+
+    // Returns the canonical version of the tree. May reuse (and rewire) the nodes passed in,
+    // so only hand over trees nobody else holds on to yet.
+    public static Node intern(Node node) {
+        expungeCleared();
+        return internNode(node);
+    }
+
+    private static Node internNode(Node node) {
+        if (node == null) return null;
+        // Only write fields that actually change, so re-interning a canonical tree leaves it untouched
+        Node left = internNode(node.left);
+        if (left != node.left) node.left = left;
+        Node right = internNode(node.right);
+        if (right != node.right) node.right = right;
+        if (node.children != null) {
+            List<Node> children = new ArrayList<>(node.children.size());
+            boolean changed = false;
+            for (Node child : node.children) {
+                Node canonical = internNode(child);
+                children.add(canonical);
+                changed |= canonical != child;
+            }
+            if (changed) node.children = Collections.unmodifiableList(children);
+        }
+        // A handful of distinct values, but every JSON-decoded node used to carry its own copies
+        if (node.type != null && node.type != node.type.intern()) node.type = node.type.intern();
+        if (node.operator != null && node.operator != node.operator.intern()) node.operator = node.operator.intern();
+
+        internedNodes.incrementAndGet();
+        Key key = new Key(node);
+        Node[] result = new Node[1];
+        pool.compute(key, (k, existing) -> {
+            Node canonical = existing == null ? null : existing.get();
+            if (canonical != null) {
+                result[0] = canonical;
+                return existing;
+            }
+            result[0] = node;
+            return new CanonicalRef(node, k, cleared);
+        });
+
+        if (result[0] != node) {
+            sharedNodes.incrementAndGet();
+            bytesSaved.addAndGet(estimateBytes(node));
+        }
+        return result[0];
+    }
+
+    private static void expungeCleared() {
+        CanonicalRef ref;
+        while ((ref = (CanonicalRef) cleared.poll()) != null) {
+            pool.remove(ref.key, ref);
+        }
+    }
+
+    // Only the node itself: its children were counted when they were interned
+    private static long estimateBytes(Node node) {
+        long bytes = NODE_BYTES;
+        if (node.value != null) bytes += STRING_BYTES + node.value.length();
+        if (node.children != null) bytes += LIST_BYTES + 4L * node.children.size();
+        return bytes;
+    }
+
+    public static Map<String, Object> stats() {
+        expungeCleared();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", pool.size());
+        stats.put("internedNodes", internedNodes.get());
+        stats.put("sharedNodes", sharedNodes.get());
+        stats.put("estimatedBytesSaved", bytesSaved.get());
+        return stats;
+    }
+
+    private static final class CanonicalRef extends WeakReference<Node> {
+        final Key key;
+
+        CanonicalRef(Node node, Key key, ReferenceQueue<Node> queue) {
+            super(node, queue);
+            this.key = key;
+        }
+    }
+
+    // Strings by value, children by identity (they're canonical already)
+    private static final class Key {
+        final String type;
+        final String operator;
+        final String value;
+        final Node left;
+        final Node right;
+        final List<Node> children;
+        final int hash;
+
+        Key(Node node) {
+            this.type = node.type;
+            this.operator = node.operator;
+            this.value = node.value;
+            this.left = node.left;
+            this.right = node.right;
+            this.children = node.children;
+            int h = Objects.hash(type, operator, value);
+            h = 31 * h + System.identityHashCode(left);
+            h = 31 * h + System.identityHashCode(right);
+            if (children != null) {
+                for (Node child : children) h = 31 * h + System.identityHashCode(child);
+            } else {
+                h = 31 * h - 1;
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && Objects.equals(type, other.type)
+                    && Objects.equals(operator, other.operator)
+                    && Objects.equals(value, other.value)
+                    && left == other.left
+                    && right == other.right
+                    && sameChildren(children, other.children);
+        }
+
+        private static boolean sameChildren(List<Node> a, List<Node> b) {
+            if (a == b) return true;
+            if (a == null || b == null || a.size() != b.size()) return false;
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package rule_engine.rule_engine.parsers;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.ColumnarBatch;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarEvaluatorTest {
+
+    @Test
+    void columnarMatchesRowAtATime() {
+        assertColumnarMatchesRowAtATime(RuleCompiler::compile);
+    }
+
+    @Test
+    void promotedRulesStillEvaluateColumnar() {
+        // Bytecode replaces the tree for row-at-a-time evaluation only; columnar keeps walking the interpreted one
+        assertColumnarMatchesRowAtATime(ast -> {
+            CompiledRule promoted = RuleBytecodeCompiler.generate(RuleCompiler.compile(ast));
+            assertTrue(promoted.isBytecode());
+            return promoted;
+        });
+    }
+
+    private static void assertColumnarMatchesRowAtATime(Function<Node, CompiledRule> compiler) {
+        Random random = new Random(3);
+        String[] departments = {"Sales", "Marketing", "HR"};
+        int size = 1000;
+
+        ColumnarBatch batch = new ColumnarBatch();
+        batch.setSize(size);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        double[] age = new double[size], salary = new double[size], experience = new double[size];
+        int[] department = new int[size], name = new int[size], email = new int[size];
+        for (int i = 0; i < size; i++) {
+            age[i] = 18 + random.nextInt(50);
+            salary[i] = random.nextInt(100000);
+            experience[i] = random.nextInt(10);
+            department[i] = random.nextInt(departments.length);
+            name[i] = random.nextInt(2);
+            email[i] = 0;
+            rows.add(Map.of("age", age[i], "salary", salary[i], "experience", experience[i],
+                    "department", departments[department[i]], "name", name[i] == 0 ? "John" : "Jane", "email", "john@example.com"));
+        }
+        batch.getNumeric().putAll(Map.of("age", age, "salary", salary, "experience", experience));
+        batch.getStrings().put("department", stringColumn(List.of(departments), department));
+        batch.getStrings().put("name", stringColumn(List.of("John", "Jane"), name));
+        batch.getStrings().put("email", stringColumn(List.of("john@example.com"), email));
+
+        for (String ruleString : RuleCompilerTest.RULES) {
+            CompiledRule compiled = compiler.apply(RuleParser.parseExpression(ruleString));
+            for (boolean vector : new boolean[]{false, true}) {
+                long[] bits = ColumnarEvaluator.evaluate(compiled, batch, vector);
+                for (int i = 0; i < size; i++) {
+                    assertEquals(compiled.evaluate(rows.get(i)), (bits[i >>> 6] & (1L << i)) != 0, ruleString + " record " + i);
+                }
+            }
+        }
+    }
+
+    private static ColumnarBatch.StringColumn stringColumn(List<String> dictionary, int[] codes) {
+        ColumnarBatch.StringColumn column = new ColumnarBatch.StringColumn();
+        column.setDictionary(dictionary);
+        column.setCodes(codes);
+        return column;
+    }
+}
@@ -0,0 +1,66 @@
+package rule_engine.rule_engine.parsers;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleCombinerTest {
+
+    @Test
+    void combinesExclusiveGroupsWithOrAndTheRestWithAnd() {
+        List<String> rules = List.of(
+                "((age > 30 AND department = 'Sales') OR (age != 25 AND department = 'Marketing'))",
+                "(salary > 50000 OR experience > 5)",
+                "(age > 30 AND department = 'Marketing')",
+                "(name = 'John' AND email = 'john@example.com')",
+                "((name = 'Jane' AND email = 'jane@example.com'))");
+
+        assertEquals("(((age > 30 AND department = 'Sales') OR (age != 25 AND department = 'Marketing') OR (age > 30 AND department = 'Marketing'))"
+                        + " AND (salary > 50000 OR experience > 5)"
+                        + " AND ((name = 'John' AND email = 'john@example.com') OR (name = 'Jane' AND email = 'jane@example.com')))",
+                RuleCombiner.combineRules(rules));
+    }
+
+    @Test
+    void foldsEqualityChainsIntoSets() {
+        List<String> rules = RuleCombiner.splitRuleList("department = 'Sales',department IN ('HR', 'R,D'),department = 'IT',age > 30");
+
+        assertEquals(4, rules.size());
+        assertEquals("(department IN ('Sales', 'HR', 'R,D', 'IT') AND age > 30)", RuleCombiner.combineRules(rules));
+        // Overlapping lists don't rule each other out, so only the first is kept
+        assertEquals("department IN ('HR', 'IT')", RuleCombiner.combineRules(List.of("department IN ('HR', 'IT')", "department IN ('IT', 'Sales')")));
+    }
+
+    @Test
+    void keepsOnlyTheFirstGroupWhenTheyDontExcludeEachOther() {
+        // Same attributes, but nothing rules out the first one: age > 30 and age < 40 can both hold
+        Node combined = RuleCombiner.combine(List.of("(age > 30)", "(age < 40)", "(age > 30)"));
+        assertEquals("age>30", combined.value);
+
+        // age < 25 can't hold alongside age > 30, and the duplicate doesn't count
+        combined = RuleCombiner.combine(List.of("(age > 30)", "(age < 25)", "(age > 30)"));
+        assertEquals("(age > 30 OR age < 25)", RuleParser.toRuleString(combined));
+    }
+
+    @Test
+    void printedRuleParsesBackToTheSameTree() {
+        Node combined = RuleCombiner.combine(List.of(
+                "(department = 'R AND D' AND age >= 30.5)", "(department = \"O'Brien's\" AND age >= 40)", "(name = 'x' OR email = 'y' OR salary = 3)"));
+        assertEquals(combined, RuleParser.parseExpression(RuleParser.toRuleString(combined)));
+    }
+
+    @Test
+    void scalesToThousandsOfRules() {
+        List<String> rules = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rules.add("(department = 'D" + i + "' AND age > " + i + ")");
+        }
+        Node combined = RuleCombiner.combine(rules);
+        assertEquals("OR", combined.operator);
+        assertEquals(5000, combined.children.size());
+    }
+}
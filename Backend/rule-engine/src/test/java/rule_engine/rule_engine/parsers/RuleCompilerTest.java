@@ -0,0 +1,194 @@
+package rule_engine.rule_engine.parsers;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleCompilerTest {
+
+    static final List<String> RULES = List.of(
+            "((age > 30 AND department = 'Sales') OR (age < 25 AND department = 'Marketing')) AND (salary > 50000 OR experience > 5)",
+            "age >= 30 AND age <= 40 AND salary != 1000",
+            "department != 'HR' OR name = 'John' OR email = 'john@example.com'",
+            "experience = 5 OR age = 30.5",
+            "department IN ('Sales', 'HR') AND age NOT IN (20, 30, 40, 41, 42)",
+            "experience IN (1, 3, 5.0, 7) OR name NOT IN ('John')"
+    );
+
+    @Test
+    void compiledRuleMatchesInterpreter() {
+        for (String ruleString : RULES) {
+            Node ast = RuleParser.parseExpression(ruleString);
+            assertMatchesInterpreter(ast, RuleCompiler.compile(ast));
+        }
+    }
+
+    @Test
+    void bytecodeMatchesInterpreter() {
+        for (String ruleString : RULES) {
+            Node ast = RuleParser.parseExpression(ruleString);
+            CompiledRule generated = RuleBytecodeCompiler.generate(RuleCompiler.compile(ast));
+            assertTrue(generated.isBytecode());
+            assertMatchesInterpreter(ast, generated);
+        }
+    }
+
+    @Test
+    void bytecodeKeepsInvalidConditionsLazy() {
+        Node ast = RuleParser.parseExpression("age > 30 OR age = abc");
+        CompiledRule generated = RuleBytecodeCompiler.generate(RuleCompiler.compile(ast));
+
+        assertTrue(generated.evaluate(Map.of("age", 40)));
+        assertThrows(InvalidConditionException.class, () -> generated.evaluate(Map.of("age", 20)));
+        assertThrows(InvalidConditionException.class, () -> generated.evaluate(Map.of("salary", 20)));
+    }
+
+    @Test
+    void reorderRanksChildrenByCostPerDecidingResult() {
+        // Child 0 is true 90% of the time at 50 ns, child 1 true 5% at 5 ns
+        ChildStats stats = new ChildStats(2);
+        record(stats, 0, 1000, 900, 50_000);
+        record(stats, 1, 1000, 50, 5_000);
+        CompiledNode[] children = {ConstantNode.TRUE, ConstantNode.FALSE};
+
+        // AND is decided by a false: child 1 first
+        assertArrayEquals(new Integer[]{1, 0}, AdaptiveReorderer.newOrder(children, stats, true, 100));
+        assertEquals(50 + 0.9 * 5, AdaptiveReorderer.expectedCost(AdaptiveReorderer.identity(2), stats, true), 1e-9);
+        assertEquals(5 + 0.05 * 50, AdaptiveReorderer.expectedCost(new Integer[]{1, 0}, stats, true), 1e-9);
+        // OR is decided by a true: child 0 already is the better bet
+        assertArrayEquals(new Integer[]{0, 1}, AdaptiveReorderer.newOrder(children, stats, false, 100));
+        // Not enough samples yet
+        assertNull(AdaptiveReorderer.newOrder(children, stats, true, 1001));
+    }
+
+    @Test
+    void adaptiveReorderPutsTheSelectiveConditionFirst() {
+        // The department check almost always passes, the age check almost never does
+        Node ast = RuleParser.parseExpression("department != 'HR' AND age > 60");
+        CompiledRule profiled = RuleCompiler.compile(1L, ast, true);
+        ChildStats stats = ((AndNode) profiled.root()).stats;
+        record(stats, 0, 1000, 990, 20_000);
+        record(stats, 1, 990, 20, 19_800);
+
+        CompiledRule reordered = AdaptiveReorderer.reorder(profiled, 100);
+        assertNotSame(profiled, reordered);
+        ReorderedNode root = (ReorderedNode) reordered.root();
+        assertInstanceOf(GreaterThan.class, ((AndNode) root.reordered).children[0]);
+        assertMatchesInterpreter(ast, reordered);
+
+        // Records missing an attribute take the written order, so they fail (or don't) exactly as before
+        InvalidConditionException e = assertThrows(InvalidConditionException.class, () -> reordered.evaluate(Map.of("age", 30)));
+        assertEquals("Variable 'department' not found in context", e.getMessage());
+        assertFalse(reordered.evaluate(Map.of("department", "HR")));
+
+        // A second pass keeps the written order as the fallback
+        ChildStats again = ((AndNode) root.reordered).stats;
+        record(again, 0, 1000, 990, 20_000);
+        record(again, 1, 990, 20, 19_800);
+        ReorderedNode twice = (ReorderedNode) AdaptiveReorderer.reorder(reordered, 100).root();
+        assertSame(root.original, twice.original);
+        assertNotSame(root.reordered, twice.reordered);
+    }
+
+    @Test
+    void adaptiveReorderLeavesInvalidConditionsPinned() {
+        Node ast = RuleParser.parseExpression("age > 60 AND age = abc");
+        CompiledRule profiled = RuleCompiler.compile(1L, ast, true);
+        for (int i = 0; i < 100_000; i++) {
+            try {
+                profiled.evaluate(Map.of("age", 30));
+            } catch (InvalidConditionException e) {
+                // not reached, age > 60 is always false here
+            }
+        }
+        assertSame(profiled, AdaptiveReorderer.reorder(profiled, 100));
+    }
+
+    @Test
+    void errorsStayLazyLikeTheInterpreter() {
+        Node ast = RuleParser.parseExpression("age > 30 OR department = 'Sales'");
+        CompiledRule compiled = RuleCompiler.compile(ast);
+
+        // Short-circuits before it ever looks for department
+        assertTrue(compiled.evaluate(Map.of("age", 40)));
+
+        InvalidConditionException e = assertThrows(InvalidConditionException.class, () -> compiled.evaluate(Map.of("age", 20)));
+        assertEquals("Variable 'department' not found in context", e.getMessage());
+    }
+
+    @Test
+    void badNumericLiteralFailsOnlyWhenReached() {
+        Node ast = RuleParser.parseExpression("age = abc");
+        CompiledRule compiled = RuleCompiler.compile(ast);
+
+        InvalidConditionException e = assertThrows(InvalidConditionException.class, () -> compiled.evaluate(Map.of("age", 20)));
+        assertEquals("Invalid numeric value: abc", e.getMessage());
+    }
+
+    @Test
+    void configuredAttributesNeedNoCodeChange() {
+        AttributeSchema original = AttributeSchema.get();
+        AttributeSchema.install(new AttributeSchema(List.of("age", "score"), List.of("department", "region")));
+        try {
+            Node ast = RuleParser.parseExpression("score >= 7.5 AND region != 'EU' AND age < 40");
+            CompiledRule compiled = RuleCompiler.compile(ast);
+            CompiledRule generated = RuleBytecodeCompiler.generate(compiled);
+            for (Map<String, Object> record : List.of(
+                    Map.<String, Object>of("score", 8, "region", "US", "age", 30),
+                    Map.<String, Object>of("score", 8, "region", "EU", "age", 30),
+                    Map.<String, Object>of("score", 7, "region", "APAC", "age", 30))) {
+                assertEquals(RuleParser.evaluate(ast, record), compiled.evaluate(record), record.toString());
+                assertEquals(RuleParser.evaluate(ast, record), generated.evaluate(record), record.toString());
+            }
+            assertThrows(InvalidConditionException.class, () -> RuleParser.parseExpression("salary > 10"));
+            assertThrows(InvalidConditionException.class, () -> RuleParser.parseExpression("region > 10"));
+        } finally {
+            AttributeSchema.install(original);
+        }
+    }
+
+    @Test
+    void contextReportsBadValuesWhenReached() {
+        CompiledRule compiled = RuleCompiler.compile(RuleParser.parseExpression("department = 'Sales' OR age > 30"));
+        Map<String, Object> nullAge = new HashMap<>();
+        nullAge.put("department", "HR");
+        nullAge.put("age", null);
+
+        assertTrue(compiled.evaluate(Map.of("department", "Sales", "age", "old")));
+        assertEquals("Variable 'age' is null", assertThrows(InvalidConditionException.class, () -> compiled.evaluate(nullAge)).getMessage());
+        assertEquals("Variable 'age' must be a number",
+                assertThrows(InvalidConditionException.class, () -> compiled.evaluate(Map.of("department", "HR", "age", "old"))).getMessage());
+        // A value no rule mentions still compares (unequal to every literal)
+        assertFalse(compiled.evaluate(Map.of("department", "Unknown", "age", 20)));
+    }
+
+    @Test
+    void nullAstEvaluatesToFalse() {
+        assertFalse(RuleCompiler.compile(null).evaluate(Map.of()));
+    }
+
+    private static void assertMatchesInterpreter(Node ast, CompiledRule compiled) {
+        Random random = new Random(42);
+        String[] departments = {"Sales", "Marketing", "HR"};
+        for (int i = 0; i < 500; i++) {
+            Map<String, Object> context = new HashMap<>();
+            context.put("age", 18 + random.nextInt(50));
+            context.put("salary", random.nextInt(100000));
+            context.put("experience", random.nextInt(10));
+            context.put("department", departments[random.nextInt(departments.length)]);
+            context.put("name", random.nextBoolean() ? "John" : "Jane");
+            context.put("email", "john@example.com");
+            assertEquals(RuleParser.evaluate(ast, context), compiled.evaluate(context), ast + " with " + context);
+        }
+    }
+
+    private static void record(ChildStats stats, int child, long evaluations, long trues, long nanos) {
+        stats.evaluations[child] = evaluations;
+        stats.trues[child] = trues;
+        stats.nanos[child] = nanos;
+    }
+
+}
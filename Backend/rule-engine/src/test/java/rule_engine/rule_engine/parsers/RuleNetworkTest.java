@@ -0,0 +1,60 @@
+package rule_engine.rule_engine.parsers;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleNetworkTest {
+
+    @Test
+    void matchesWhatTheInterpreterSays() {
+        Random random = new Random(7);
+        String[] departments = {"Sales", "Marketing", "HR"};
+        String[] numeric = {"age", "salary", "experience"};
+        String[] operators = {">", "<", ">=", "<=", "=", "!="};
+
+        Map<Long, Node> rules = new LinkedHashMap<>();
+        for (long id = 1; id <= 300; id++) {
+            StringBuilder rule = new StringBuilder();
+            int conditions = 1 + random.nextInt(4);
+            for (int c = 0; c < conditions; c++) {
+                if (c > 0) rule.append(random.nextBoolean() ? " AND " : " OR ");
+                if (random.nextInt(3) == 0) {
+                    rule.append("department = '").append(departments[random.nextInt(departments.length)]).append("'");
+                } else {
+                    rule.append(numeric[random.nextInt(numeric.length)]).append(' ')
+                            .append(operators[random.nextInt(operators.length)]).append(' ')
+                            .append(random.nextInt(60));
+                }
+            }
+            rules.put(id, RuleParser.parseExpression(rule.toString()));
+        }
+
+        RuleNetwork network = RuleNetwork.build(0, rules);
+        assertTrue(network.getConditionCount() < 300 * 4);
+        assertTrue(network.getIndexedConditionCount() > 0);
+
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("age", random.nextInt(60));
+            record.put("salary", random.nextInt(60));
+            // Sometimes leave an attribute out so the error paths get exercised too
+            if (random.nextBoolean()) record.put("experience", random.nextInt(60));
+            if (random.nextInt(10) == 0) record.put("salary", random.nextBoolean() ? 30.5 : Double.NaN);
+            record.put("department", departments[random.nextInt(departments.length)]);
+
+            List<Long> expected = new ArrayList<>();
+            for (Map.Entry<Long, Node> rule : rules.entrySet()) {
+                try {
+                    if (RuleParser.evaluate(rule.getValue(), record)) expected.add(rule.getKey());
+                } catch (RuntimeException e) {
+                    // Doesn't match
+                }
+            }
+            assertEquals(expected, network.match(record), record.toString());
+        }
+    }
+}
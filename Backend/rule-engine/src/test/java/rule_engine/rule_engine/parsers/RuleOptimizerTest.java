@@ -0,0 +1,75 @@
+package rule_engine.rule_engine.parsers;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleOptimizerTest {
+
+    @Test
+    void foldsRangesContradictionsAndTautologies() {
+        assertOptimizesTo("age > 40", "age > 30 AND age > 40");
+        assertOptimizesTo("(age >= 30 AND department = 'Sales' AND age < 40)", "age >= 30 AND department = 'Sales' AND age > 20 AND age < 40 AND age <= 50");
+        assertOptimizesTo("age = 35", "age > 30 AND age = 35 AND age != 40");
+        assertOptimizesTo("false", "age > 50 AND age < 20");
+        assertOptimizesTo("false", "department = 'Sales' AND department = 'HR'");
+        assertOptimizesTo("false", "age >= 30 AND age < 30");
+        assertOptimizesTo("true", "age > 30 OR age <= 30");
+        assertOptimizesTo("true", "department != 'Sales' OR department != 'HR'");
+        assertOptimizesTo("age < 60", "age < 60 OR age < 50 OR age = 10");
+        // Dead branch: the contradiction drops out of the OR
+        assertOptimizesTo("salary > 5", "(age > 50 AND age < 20) OR salary > 5");
+        // Equality chains become sets once there are enough values
+        assertOptimizesTo("(department IN ('Sales', 'HR', 'IT') OR age > 60)",
+                "department = 'Sales' OR age > 60 OR department = 'HR' OR department = 'IT' OR department = 'Sales'");
+        assertOptimizesTo("(age NOT IN (1, 2.0, 3.5, 4) AND salary > 5)", "age NOT IN (1, 2.0) AND salary > 5 AND age != 3.5 AND age != 4 AND age != 1");
+        assertOptimizesTo("(department = 'Sales' OR department = 'HR')", "department = 'Sales' OR department = 'HR'");
+        // Nothing to do - the original tree comes back as is
+        Node ast = RuleParser.parseExpression("age > 30 AND department = 'Sales'");
+        assertSame(ast, RuleOptimizer.optimize(ast));
+    }
+
+    @Test
+    void givesTheSameAnswersForCompleteRecords() {
+        Random random = new Random(11);
+        String[] departments = {"Sales", "Marketing", "HR"};
+        String[] operators = {">", "<", ">=", "<=", "=", "!="};
+        for (int r = 0; r < 2000; r++) {
+            StringBuilder rule = new StringBuilder();
+            int conditions = 2 + random.nextInt(5);
+            for (int c = 0; c < conditions; c++) {
+                if (c > 0) rule.append(random.nextBoolean() ? " AND " : " OR ");
+                if (random.nextInt(6) == 0) {
+                    rule.append(random.nextBoolean() ? "age IN (" : "age NOT IN (").append(random.nextInt(10)).append(", ")
+                            .append(random.nextInt(10)).append(')');
+                } else if (random.nextInt(3) == 0) {
+                    rule.append("department ").append(random.nextBoolean() ? "=" : "!=").append(" '")
+                            .append(departments[random.nextInt(departments.length)]).append("'");
+                } else {
+                    rule.append(random.nextBoolean() ? "age " : "salary ").append(operators[random.nextInt(operators.length)])
+                            .append(' ').append(random.nextInt(10));
+                }
+            }
+            Node ast = RuleParser.parseExpression(rule.toString());
+            Node optimized = RuleOptimizer.optimize(ast);
+            for (int age = -1; age <= 10; age++) {
+                for (String department : departments) {
+                    Map<String, Object> record = Map.of("age", age, "salary", random.nextInt(12) - 1, "department", department);
+                    assertEquals(RuleParser.evaluate(ast, record), RuleParser.evaluate(optimized, record), rule + " " + record);
+                }
+            }
+        }
+    }
+
+    private static void assertOptimizesTo(String expected, String rule) {
+        Node optimized = RuleOptimizer.optimize(RuleParser.parseExpression(rule));
+        if ("constant".equals(optimized.type)) {
+            assertEquals(expected, optimized.value, rule);
+        } else {
+            assertEquals(expected, RuleParser.toRuleString(optimized), rule);
+        }
+    }
+}
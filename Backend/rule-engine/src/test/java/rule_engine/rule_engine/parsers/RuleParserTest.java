@@ -0,0 +1,101 @@
+package rule_engine.rule_engine.parsers;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleParserTest {
+
+    @Test
+    void buildsNaryNodesWithOrBelowAnd() {
+        Node ast = RuleParser.parseExpression("age > 30 AND department = 'Sales' AND salary >= 50000 OR experience > 5");
+
+        assertEquals("OR", ast.operator);
+        assertNull(ast.children);
+        Node and = ast.left;
+        assertEquals("AND", and.operator);
+        assertEquals(3, and.children.size());
+        assertNull(and.left);
+        assertEquals("department=Sales", and.children.get(1).value);
+        assertEquals("salary>=50000", and.children.get(2).value);
+        assertEquals("experience>5", ast.right.value);
+    }
+
+    @Test
+    void parsesMembershipLists() {
+        Node ast = RuleParser.parseExpression("department IN ('Sales', \"R&D, Labs\",HR) AND age NOT IN (25, 30.5)");
+
+        Node in = ast.left;
+        assertEquals("IN", in.operator);
+        assertEquals("department", in.value);
+        assertEquals(List.of("Sales", "R&D, Labs", "HR"), in.getLiterals());
+        assertEquals("NOT IN", ast.right.operator);
+        assertEquals("(department IN ('Sales', 'R&D, Labs', 'HR') AND age NOT IN (25, 30.5))", RuleParser.toRuleString(ast));
+        assertEquals(ast, RuleParser.parseExpression(RuleParser.toRuleString(ast)));
+
+        assertTrue(RuleParser.evaluate(ast, Map.of("department", "R&D, Labs", "age", 30)));
+        assertFalse(RuleParser.evaluate(ast, Map.of("department", "HR", "age", 30.5)));
+        assertFalse(RuleParser.evaluate(ast, Map.of("department", "Marketing", "age", 30)));
+
+        assertEquals("Missing ')' for '(' at position 14, found 'IT' at position 20",
+                assertThrows(InvalidConditionException.class, () -> RuleParser.parseExpression("department IN ('HR' 'IT')")).getMessage());
+        assertEquals("Expected IN after NOT at position 8, found '('",
+                assertThrows(InvalidConditionException.class, () -> RuleParser.parseExpression("age NOT (1, 2)")).getMessage());
+        assertEquals("Expected a value in the IN list for 'age' at position 8, found ')'",
+                assertThrows(InvalidConditionException.class, () -> RuleParser.parseExpression("age IN ()")).getMessage());
+    }
+
+    @Test
+    void matchesOldTreeShapeForTwoOperands() {
+        Node ast = RuleParser.parseExpression("((age>30) && department='Sales') || name = \"John Smith\"");
+
+        assertEquals("OR", ast.operator);
+        assertEquals("AND", ast.left.operator);
+        assertEquals("age>30", ast.left.left.value);
+        assertEquals("department=Sales", ast.left.right.value);
+        // Whitespace inside quotes is part of the value
+        assertEquals("name=John Smith", ast.right.value);
+        assertTrue(RuleParser.evaluate(ast, Map.of("age", 20, "department", "HR", "name", "John Smith")));
+    }
+
+    @Test
+    void keywordsInsideValuesAreNotOperators() {
+        Node ast = RuleParser.parseExpression("name = ANDY AND department = 'R AND D'");
+        assertEquals("name=ANDY", ast.left.value);
+        assertEquals("department=R AND D", ast.right.value);
+    }
+
+    @Test
+    void reportsErrorPositions() {
+        assertMessage("Invalid attribute: height at position 13", "age > 30 AND height > 2");
+        assertMessage("Invalid operator '>' for variable 'department' at position 11", "department > 3");
+        assertMessage("Missing ')' for '(' at position 0, found end of input at position 9", "(age > 30");
+        assertMessage("Unexpected ')' at position 8", "age > 30) OR age < 5");
+        assertMessage("Expected a condition at position 12, found 'OR'", "age > 30 OR OR age < 5");
+        assertMessage("Unterminated string starting at position 13", "department = 'Sales");
+        assertMessage("Both variable and value must be provided: missing value for 'age' at position 5", "age >");
+        assertThrows(InvalidRuleException.class, () -> RuleParser.parseExpression("   "));
+    }
+
+    @Test
+    void parsesLongRulesWithoutDeepRecursion() {
+        StringBuilder rule = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            if (i > 0) rule.append(i % 2 == 0 ? " OR " : " AND ");
+            rule.append("(age > ").append(i).append(" AND salary < ").append(i * 10).append(")");
+        }
+        Node ast = RuleParser.parseExpression(rule.toString());
+        assertEquals(10000, ast.children.size());
+        assertEquals(RuleParser.evaluate(ast, Map.of("age", 50, "salary", 100)),
+                RuleCompiler.compile(ast).evaluate(Map.of("age", 50, "salary", 100)));
+    }
+
+    private static void assertMessage(String expected, String rule) {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> RuleParser.parseExpression(rule));
+        assertEquals(expected, e.getMessage());
+    }
+}
@@ -0,0 +1,111 @@
+package rule_engine.rule_engine.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRuleStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void survivesRestartFromLogAndFromSnapshot() throws Exception {
+        FileRuleStore store = open();
+        store.saveAll(List.of(rule("age > 30"), rule("department = 'Sales'"), rule("salary > 50000")));
+        store.deleteById(2L);
+        // No close(): simulates a crash, so the next open has to replay the log
+        FileRuleStore replayed = open();
+        assertEquals(List.of(1L, 3L), ids(replayed));
+        assertEquals(RuleParser.parseExpression("salary > 50000"), replayed.findById(3L).orElseThrow().getAst());
+        assertEquals(4L, replayed.save(rule("age < 5")).getId());
+
+        replayed.close();
+        assertEquals(0, Files.size(dir.resolve("rules.log")));
+        FileRuleStore fromSnapshot = open();
+        assertEquals(List.of(1L, 3L, 4L), ids(fromSnapshot));
+        assertEquals("age < 5", fromSnapshot.findById(4L).orElseThrow().getRuleString());
+        assertEquals(5L, fromSnapshot.save(rule("age > 1")).getId());
+    }
+
+    @Test
+    void dropsTornRecordAtTheEndOfTheLog() throws Exception {
+        FileRuleStore store = open();
+        store.save(rule("age > 30"));
+        Files.write(dir.resolve("rules.log"), new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        FileRuleStore recovered = open();
+        assertEquals(List.of(1L), ids(recovered));
+        // Later appends go where the torn record was, so they're not lost behind it
+        recovered.save(rule("age > 40"));
+        assertEquals(List.of(1L, 2L), ids(open()));
+    }
+
+    @Test
+    void replaysALogBiggerThanTheReadBuffer() throws Exception {
+        FileRuleStore store = open();
+        for (int i = 0; i < 3000; i++) store.save(rule("age > " + i));
+        assertTrue(Files.size(dir.resolve("rules.log")) > 1 << 16);
+
+        FileRuleStore replayed = open();
+        assertEquals(3000, replayed.findAll().size());
+        assertEquals("age > 2999", replayed.findById(3000L).orElseThrow().getRuleString());
+    }
+
+    @Test
+    void failedSaveLeavesIdsUnassigned() throws Exception {
+        FileRuleStore store = open();
+        store.save(rule("age > 30"));
+        FileChannel log = (FileChannel) ReflectionTestUtils.getField(store, "logChannel");
+        log.close();
+
+        List<Rule> failed = List.of(rule("age > 40"), rule("age > 50"));
+        assertThrows(UncheckedIOException.class, () -> store.saveAll(failed));
+        assertNull(failed.get(0).getId());
+        assertNull(failed.get(1).getId());
+
+        // Once the log is writable again, the next save gets the id the failed one would have
+        FileChannel reopened = FileChannel.open(dir.resolve("rules.log"), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        reopened.position(reopened.size());
+        ReflectionTestUtils.setField(store, "logChannel", reopened);
+        assertEquals(2L, store.save(rule("age > 60")).getId());
+        assertEquals(List.of(1L, 2L), ids(open()));
+    }
+
+    @Test
+    void pagesSummariesById() throws Exception {
+        FileRuleStore store = open();
+        for (int i = 0; i < 5; i++) store.save(rule("age > " + i));
+        assertEquals(List.of(3L, 4L), store.findSummariesAfter(2, 2, false).stream().map(s -> s.getId()).toList());
+        assertNull(store.findSummariesAfter(0, 1, false).get(0).getRuleString());
+        assertEquals("age > 0", store.findSummariesAfter(0, 1, true).get(0).getRuleString());
+    }
+
+    private FileRuleStore open() throws Exception {
+        FileRuleStore store = new FileRuleStore(dir, false, Long.MAX_VALUE);
+        store.open();
+        return store;
+    }
+
+    private static Rule rule(String ruleString) {
+        Rule rule = new Rule();
+        rule.setRuleString(ruleString);
+        rule.setAst(RuleParser.parseExpression(ruleString));
+        return rule;
+    }
+
+    private static List<Long> ids(FileRuleStore store) {
+        return store.findAll().stream().map(Rule::getId).toList();
+    }
+}
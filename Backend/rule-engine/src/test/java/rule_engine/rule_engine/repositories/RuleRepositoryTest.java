@@ -0,0 +1,101 @@
+package rule_engine.rule_engine.repositories;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleSummary;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Against the configured database, like RuleEngineApplicationTests; every SQL statement Hibernate sends
+// is captured so we can check which columns a query actually reads
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "rule_engine.rule_engine.repositories.RuleRepositoryTest$CapturedSql")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class RuleRepositoryTest {
+
+    public static class CapturedSql implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql.toLowerCase(Locale.ROOT));
+            return sql;
+        }
+    }
+
+    @Autowired
+    private RuleRepository ruleRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void saveRules() {
+        for (int i = 0; i < 5; i++) {
+            Rule rule = new Rule();
+            rule.setRuleString("age > " + i);
+            rule.setDescription("rule " + i);
+            rule.setAst(RuleParser.parseExpression("age > " + i));
+            ids.add(ruleRepository.save(rule).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        CapturedSql.STATEMENTS.clear();
+    }
+
+    @Test
+    void summaryPagesNeverReadTheAst() {
+        for (boolean withRuleString : new boolean[]{false, true}) {
+            List<Long> paged = new ArrayList<>();
+            long after = ids.get(0) - 1;
+            while (true) {
+                List<RuleSummary> page = withRuleString
+                        ? ruleRepository.findSummariesWithRuleStringAfter(after, Limit.of(2))
+                        : ruleRepository.findSummariesAfter(after, Limit.of(2));
+                if (page.isEmpty()) break;
+                assertTrue(page.size() <= 2);
+                for (RuleSummary summary : page) {
+                    paged.add(summary.getId());
+                    assertEquals(withRuleString, summary.getRuleString() != null);
+                }
+                after = page.get(page.size() - 1).getId();
+            }
+            assertEquals(ids, paged.subList(0, ids.size()));
+        }
+
+        assertFalse(CapturedSql.STATEMENTS.isEmpty());
+        for (String sql : CapturedSql.STATEMENTS) {
+            assertFalse(sql.contains("ast_binary"), sql);
+        }
+    }
+
+    @Test
+    void loadingARuleLeavesTheLobsUntilTheyAreUsed() {
+        Rule rule = entityManager.find(Rule.class, ids.get(2));
+        assertEquals("rule 2", rule.getDescription());
+        assertEquals(1, CapturedSql.STATEMENTS.size());
+        assertFalse(CapturedSql.STATEMENTS.get(0).contains("ast_binary"), CapturedSql.STATEMENTS.get(0));
+
+        // The first lazy column touched brings the whole "lobs" group in one select
+        assertEquals("age > 2", rule.getRuleString());
+        assertEquals(RuleParser.parseExpression("age > 2"), rule.getAst());
+        assertEquals(2, CapturedSql.STATEMENTS.size());
+        assertTrue(CapturedSql.STATEMENTS.get(1).contains("ast_binary"), CapturedSql.STATEMENTS.get(1));
+    }
+}
@@ -0,0 +1,74 @@
+package rule_engine.rule_engine.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import rule_engine.rule_engine.parsers.RuleCompiler;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private RuleMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new RuleMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        ReflectionTestUtils.setField(metrics, "maxTaggedRules", 2);
+        metrics.init();
+    }
+
+    @Test
+    void rulesPastTheTagCapShareOther() {
+        metrics.recordEvaluation(1L, 1_000);
+        metrics.recordEvaluation(2L, 1_000);
+        metrics.recordEvaluation(3L, 1_000);
+        metrics.recordEvaluation(null, 1_000);
+
+        assertEquals(1, evaluations("1"));
+        assertEquals(1, evaluations("2"));
+        assertNull(registry.find("rules.evaluate").tag("rule", "3").timer());
+        assertEquals(2, evaluations("other"));
+    }
+
+    @Test
+    void forgetRuleFreesItsSlot() {
+        metrics.recordEvaluation(1L, 1_000);
+        metrics.recordEvaluation(2L, 1_000);
+
+        metrics.forgetRule(1L);
+        metrics.recordEvaluation(3L, 1_000);
+
+        assertNull(registry.find("rules.evaluate").tag("rule", "1").timer());
+        assertEquals(1, evaluations("3"));
+        assertEquals(0, evaluations("other"));
+    }
+
+    @Test
+    void recordErrorLooksThroughTheBatchWrapper() {
+        RuntimeException cause = assertThrows(RuntimeException.class,
+                () -> RuleCompiler.compile(RuleParser.parseExpression("age > 30")).evaluate(Map.of()));
+        // The way evaluateBatch reports a failing record
+        metrics.recordError("evaluate", new IllegalArgumentException("Record 7: " + cause.getMessage(), cause));
+        metrics.recordError("evaluate", new IllegalStateException("boom"));
+
+        assertEquals(1, errors("evaluate", "InvalidConditionException"));
+        assertEquals(1, errors("evaluate", "other"));
+        assertEquals(0, errors("parse", "InvalidConditionException"));
+    }
+
+    private long evaluations(String rule) {
+        return registry.get("rules.evaluate").tag("rule", rule).timer().count();
+    }
+
+    private double errors(String operation, String cause) {
+        return registry.get("rules.errors").tag("operation", operation).tag("cause", cause).counter().count();
+    }
+}
@@ -0,0 +1,90 @@
+package rule_engine.rule_engine.services;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleSetSnapshotTest {
+
+    @Test
+    void writesMakeNewVersionsAndLeaveOldOnesAlone() {
+        RuleSetSnapshot v1 = RuleSetSnapshot.empty().withRules(Map.of(
+                1L, RuleParser.parseExpression("age > 30"),
+                2L, RuleParser.parseExpression("department = 'Sales'")));
+        RuleSetSnapshot v2 = v1.withoutRule(1L);
+        RuleSetSnapshot v3 = v2.withRules(Map.of(3L, RuleParser.parseExpression("age < 20")));
+
+        assertEquals(List.of(1L, 2L, 3L), List.of(v1.getVersion(), v2.getVersion(), v3.getVersion()));
+        assertSame(v3, v3.withoutRule(42L));
+
+        Map<String, Object> record = Map.of("age", 40, "department", "Sales");
+        assertEquals(Set.of(1L, 2L), new HashSet<>(v1.match(record)));
+        assertEquals(List.of(2L), v2.match(record));
+        assertTrue(v1.contains(1L));
+        assertFalse(v2.contains(1L));
+        assertEquals(Set.of(2L, 3L), v3.ids());
+    }
+
+    @Test
+    void writesOnlyTouchTheirOwnRules() {
+        Map<Long, Node> rules = new HashMap<>();
+        for (long id = 1; id <= 1000; id++) rules.put(id, RuleParser.parseExpression("age > " + id));
+        RuleSetSnapshot v1 = RuleSetSnapshot.empty().withRules(rules);
+
+        // Replacing one, removing two (one of them unknown) and adding one, spread over different shards
+        RuleSetSnapshot v2 = v1.withChanges(Map.of(
+                5L, RuleParser.parseExpression("age < 5"),
+                2000L, RuleParser.parseExpression("age < 2000")), List.of(700L, 5000L));
+
+        assertEquals(1000, v1.size());
+        assertEquals(1000, v2.size());
+        assertEquals(v2.size(), v2.ids().size());
+        assertEquals(v2.size(), v2.asts().size());
+        assertEquals(rules.get(5L), v1.getAst(5L));
+        assertEquals(RuleParser.parseExpression("age < 5"), v2.getAst(5L));
+        assertTrue(v1.contains(700L));
+        assertFalse(v2.contains(700L));
+        assertFalse(v2.ids().contains(700L));
+        assertTrue(v2.ids().contains(2000L));
+        assertEquals(rules.get(999L), v2.getAst(999L));
+        assertEquals(Set.of(1L, 2L, 5L, 2000L), new HashSet<>(v2.match(Map.of("age", 2.5))));
+    }
+
+    @Test
+    void readersNeverSeeAHalfAppliedWrite() throws Exception {
+        // Every write adds a pair of rules that both match, so any snapshot has an even number of matches
+        AtomicReference<RuleSetSnapshot> current = new AtomicReference<>(RuleSetSnapshot.empty());
+        Map<String, Object> record = Map.of("age", 40);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Future<Long>> reads = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            reads.add(readers.submit(() -> {
+                long checked = 0;
+                do {
+                    RuleSetSnapshot snapshot = current.get();
+                    assertEquals(snapshot.size(), snapshot.match(record).size());
+                    assertEquals(0, snapshot.size() % 2);
+                    assertEquals(snapshot.size(), snapshot.getVersion() * 2);
+                    checked++;
+                } while (done.getCount() > 0);
+                return checked;
+            }));
+        }
+        for (long id = 1; id <= 400; id += 2) {
+            current.set(current.get().withRules(Map.of(
+                    id, RuleParser.parseExpression("age > 30"),
+                    id + 1, RuleParser.parseExpression("age >= 40"))));
+        }
+        done.countDown();
+        for (Future<Long> read : reads) assertTrue(read.get() > 0);
+        readers.shutdown();
+        assertEquals(400, current.get().size());
+    }
+}
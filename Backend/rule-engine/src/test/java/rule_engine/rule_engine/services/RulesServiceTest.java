@@ -0,0 +1,200 @@
+package rule_engine.rule_engine.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import rule_engine.rule_engine.models.BulkCreateResult;
+import rule_engine.rule_engine.models.Rule;
+import rule_engine.rule_engine.models.RuleCreateRequest;
+import rule_engine.rule_engine.parsers.CompiledRule;
+import rule_engine.rule_engine.parsers.RuleCompiler;
+import rule_engine.rule_engine.parsers.RuleParser;
+import rule_engine.rule_engine.repositories.RuleStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+// Runs on the file store so no database is needed
+@SpringBootTest(properties = {
+        "rule-engine.file-store.fsync=false",
+        "rule-engine.rule-set.refresh-interval-ms=3600000",
+        "rule-engine.bulk.chunk-size=2",
+        "rule-engine.batch.chunk-size=16"})
+@ActiveProfiles("file")
+class RulesServiceTest {
+
+    @TempDir
+    static Path dir;
+
+    @DynamicPropertySource
+    static void storeDir(DynamicPropertyRegistry registry) {
+        registry.add("rule-engine.file-store.dir", dir::toString);
+    }
+
+    @Autowired
+    private RulesService rulesService;
+
+    @SpyBean
+    private RuleStore ruleStore;
+
+    @Test
+    void picksUpRulesCreatedAndDeletedByAnotherNode() {
+        // Written straight to the store, the way another node sharing it would
+        Rule rule = new Rule();
+        rule.setRuleString("age > 30");
+        rule.setAst(RuleParser.parseExpression("age > 30"));
+        Long id = ruleStore.save(rule).getId();
+        assertFalse(rulesService.getRuleSet().contains(id));
+
+        // A miss falls back to the store and publishes what it finds
+        assertTrue(rulesService.getCompiledRule(rulesService.getRuleSet(), id).orElseThrow().evaluate(Map.of("age", 40)));
+        assertTrue(rulesService.getRuleSet().contains(id));
+
+        // Deletes only show up on the next refresh
+        ruleStore.deleteById(id);
+        assertTrue(rulesService.getRuleSet().contains(id));
+        rulesService.refreshRuleSet();
+        assertFalse(rulesService.getRuleSet().contains(id));
+        assertTrue(rulesService.getCompiledRule(rulesService.getRuleSet(), id).isEmpty());
+    }
+
+    @Test
+    void matchCatchesUpOnceTheNetworkIsBuilt() throws InterruptedException {
+        Long id = rulesService.createRule("department = 'Network'", null).getId();
+        long version = rulesService.getRuleSet().getVersion();
+
+        // Built in the background; until then /match keeps answering from the previous built version
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (rulesService.getMatchableRuleSet().getVersion() < version && System.nanoTime() < deadline) {
+            assertTrue(rulesService.getMatchableRuleSet().hasNetwork());
+            Thread.sleep(10);
+        }
+        RuleSetSnapshot matchable = rulesService.getMatchableRuleSet();
+        assertEquals(version, matchable.getVersion());
+        assertTrue(matchable.hasNetwork());
+        assertEquals(List.of(id), rulesService.matchRules(matchable, Map.of("department", "Network")));
+    }
+
+    @Test
+    void missesAreLookedUpTogetherAndUnknownIdsRemembered() {
+        List<Long> ids = new ArrayList<>();
+        for (String ruleString : List.of("age > 30", "age < 20")) {
+            Rule rule = new Rule();
+            rule.setRuleString(ruleString);
+            rule.setAst(RuleParser.parseExpression(ruleString));
+            ids.add(ruleStore.save(rule).getId());
+        }
+        Long unknown = ids.get(1) + 1000;
+        long version = rulesService.getRuleSet().getVersion();
+        clearInvocations(ruleStore);
+
+        Map<Long, CompiledRule> rules = rulesService.getCompiledRules(rulesService.getRuleSet(), List.of(unknown, ids.get(0), ids.get(1)));
+
+        assertEquals(ids, List.copyOf(rules.keySet()));
+        verify(ruleStore, times(1)).findAllById(any());
+        verify(ruleStore, never()).findById(any());
+        assertEquals(version + 1, rulesService.getRuleSet().getVersion());
+
+        // Known now, or known to be missing: no more store calls
+        assertEquals(ids, List.copyOf(rulesService.getCompiledRules(rulesService.getRuleSet(), List.of(unknown, ids.get(0), ids.get(1))).keySet()));
+        assertTrue(rulesService.getCompiledRule(rulesService.getRuleSet(), unknown).isEmpty());
+        verify(ruleStore, times(1)).findAllById(any());
+    }
+
+    @Test
+    void bulkCreateOnlyFailsTheItemsThatFailed() {
+        // Chunks of two: [0, 2] fails to save, 1 doesn't parse, [3, 4] is saved
+        doThrow(new IllegalStateException("disk full")).doCallRealMethod().when(ruleStore).saveAll(anyList());
+        List<RuleCreateRequest> requests = Stream.of("age > 30", "age >", "salary < 100", "department = 'Sales'", "age IN (1, 2)")
+                .map(ruleString -> {
+                    RuleCreateRequest request = new RuleCreateRequest();
+                    request.setRuleString(ruleString);
+                    return request;
+                }).toList();
+        long version = rulesService.getRuleSet().getVersion();
+
+        List<BulkCreateResult> results = rulesService.createRules(requests);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(BulkCreateResult::getIndex).toList());
+        assertEquals("Could not save: disk full", results.get(0).getError());
+        assertEquals("Could not save: disk full", results.get(2).getError());
+        assertNull(results.get(1).getId());
+        assertNotNull(results.get(1).getError());
+        for (BulkCreateResult saved : List.of(results.get(3), results.get(4))) {
+            assertNull(saved.getError());
+            assertTrue(ruleStore.existsById(saved.getId()));
+            assertTrue(rulesService.getRuleSet().contains(saved.getId()));
+        }
+        // Saved items are published together, as one version
+        assertEquals(version + 1, rulesService.getRuleSet().getVersion());
+    }
+
+    @Test
+    void streamReportsBadRecordsAndStopsAtMalformedJson() throws Exception {
+        CompiledRule rule = RuleCompiler.compile(RuleParser.parseExpression("age > 30"));
+        String input = "{\"age\": 40}\n{\"name\": \"x\"}\n{\"age\": 10}\n{\"age\": \n{\"age\": 50}\n";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long processed = rulesService.evaluateStream(rule, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+        // A record that fails to evaluate only fails its own line; malformed JSON ends the stream there
+        assertEquals(3, processed);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("{\"index\":0,\"result\":true}", lines[0]);
+        assertEquals("{\"index\":1,\"error\":\"Variable 'age' not found in context\"}", lines[1]);
+        assertEquals("{\"index\":2,\"result\":false}", lines[2]);
+        assertTrue(lines[3].startsWith("{\"index\":3,\"error\":\"Malformed record: "), lines[3]);
+    }
+
+    @Test
+    void batchAboveChunkSizeRunsOnThePool() {
+        CompiledRule rule = RuleCompiler.compile(RuleParser.parseExpression("age > 30 AND department = 'Sales'"));
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> record = new HashMap<>() {
+                @Override
+                public Object get(Object key) {
+                    threads.add(Thread.currentThread());
+                    return super.get(key);
+                }
+            };
+            record.put("age", i % 60);
+            record.put("department", i % 3 == 0 ? "Sales" : "HR");
+            records.add(record);
+        }
+
+        boolean[] results = rulesService.evaluateBatch(rule, records);
+
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i % 60 > 30 && i % 3 == 0, results[i], "record " + i);
+        }
+        assertFalse(threads.isEmpty());
+        assertFalse(threads.contains(Thread.currentThread()), "evaluated on the caller instead of the pool");
+
+        // A record that fails names its index, wherever in the batch it landed
+        records.get(155).remove("department");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> rulesService.evaluateBatch(rule, records));
+        assertEquals("Record 155: Variable 'department' not found in context", e.getMessage());
+    }
+}
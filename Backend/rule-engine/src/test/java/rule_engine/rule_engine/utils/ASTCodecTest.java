@@ -0,0 +1,46 @@
+package rule_engine.rule_engine.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTCodecTest {
+
+    @Test
+    void roundTripsParsedRules() throws Exception {
+        List<String> rules = List.of(
+                "((age > 30 AND department = 'Sales') OR (age < 25 AND department = 'Marketing')) AND (salary > 50000 OR experience > 5)",
+                "age >= -3 AND salary <= 50000.5 AND experience != 030",
+                "department != 'HR' OR name = 'Zoë' OR email = 'john@example.com'",
+                "age = abc OR salary = 1e3 OR experience = 9223372036854775807",
+                "department IN ('Sales', 'HR', 'Sales') AND age NOT IN (18, 21.5, -3) AND salary IN (1e3)");
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (String rule : rules) {
+            Node ast = RuleParser.parseExpression(rule);
+            byte[] encoded = ASTCodec.encode(ast);
+            assertEquals(ast, ASTCodec.decode(encoded), rule);
+            assertTrue(encoded.length * 4 < objectMapper.writeValueAsBytes(ast).length, rule);
+        }
+    }
+
+    @Test
+    void roundTripsNodesThatDontLookLikeConditions() {
+        Node odd = new Node("operator", "XOR", "whatever");
+        odd.left = new Node("operand", ">", "no operator here");
+        odd.right = new Node(null, null, null);
+        assertEquals(odd, ASTCodec.decode(ASTCodec.encode(odd)));
+    }
+
+    @Test
+    void rejectsUnknownVersions() {
+        byte[] encoded = ASTCodec.encode(RuleParser.parseExpression("age > 30"));
+        encoded[1] = ASTCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> ASTCodec.decode(encoded));
+        assertFalse(ASTCodec.isEncoded("{\"type\":\"operand\"}".getBytes()));
+    }
+}
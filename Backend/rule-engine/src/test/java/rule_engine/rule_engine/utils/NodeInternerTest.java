@@ -0,0 +1,36 @@
+package rule_engine.rule_engine.utils;
+
+import org.junit.jupiter.api.Test;
+import rule_engine.rule_engine.models.Node;
+import rule_engine.rule_engine.parsers.RuleParser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeInternerTest {
+
+    @Test
+    void sharesIdenticalSubtreesAcrossRules() {
+        Node first = NodeInterner.intern(RuleParser.parseExpression("(age > 30 AND department = 'Sales') OR salary > 50000"));
+        Node second = NodeInterner.intern(RuleParser.parseExpression("(age > 30 AND department = 'Sales') OR experience > 5"));
+
+        assertNotSame(first, second);
+        assertSame(first.left, second.left);
+        assertSame(first.left.left, second.left.left);
+
+        Node fromBinary = NodeInterner.intern(ASTCodec.decode(ASTCodec.encode(RuleParser.parseExpression("department = 'Sales'"))));
+        assertSame(first.left.right, fromBinary);
+    }
+
+    @Test
+    void keepsDifferentTreesApartAndLeavesCanonicalTreesAlone() {
+        Node gt = NodeInterner.intern(RuleParser.parseExpression("age > 30 AND age < 40"));
+        Node reordered = NodeInterner.intern(RuleParser.parseExpression("age < 40 AND age > 30"));
+        assertNotSame(gt, reordered);
+        assertSame(gt.left, reordered.right);
+
+        Node three = NodeInterner.intern(RuleParser.parseExpression("age > 1 AND age > 2 AND age > 3"));
+        assertSame(three, NodeInterner.intern(three));
+        assertSame(three, NodeInterner.intern(RuleParser.parseExpression("age > 1 AND age > 2 AND age > 3")));
+        assertTrue((Long) NodeInterner.stats().get("estimatedBytesSaved") > 0);
+    }
+}
@@ -35,25 +35,40 @@ document.getElementById('create-rule-form').addEventListener('submit', function(
         });
 });
 
-// Fetch All Rules
-document.getElementById('fetch-rules').addEventListener('click', function() {
-    axios.get(apiUrl + '/all')
+// Fetch Rules, a page at a time
+var RULES_PAGE_SIZE = 50;
+var lastRuleId = 0;
+
+function fetchRulesPage() {
+    axios.get(apiUrl + '/list', {
+        params: { after: lastRuleId, limit: RULES_PAGE_SIZE, includeRuleString: true }
+    })
         .then(function(response) {
             var rulesList = document.getElementById('rules-list');
-            rulesList.innerHTML = ''; // Clear previous results
             response.data.forEach(function(rule) {
                 var li = document.createElement('li');
                 li.textContent = 'ID: ' + rule.id + ', Rule: ' + rule.ruleString + ', Description: ' + rule.description;
                 rulesList.appendChild(li);
+                lastRuleId = rule.id;
             });
+            // A short page means there's nothing after it
+            document.getElementById('load-more-rules').style.display = response.data.length < RULES_PAGE_SIZE ? 'none' : '';
         })
         .catch(function(error) {
             console.error('Error fetching rules:', error);
             const errorMessage = error.response ? error.response.data.message || error.response.data : 'Failed to fetch rules';
             alert('Error: ' + errorMessage);
         });
+}
+
+document.getElementById('fetch-rules').addEventListener('click', function() {
+    document.getElementById('rules-list').innerHTML = ''; // Clear previous results
+    lastRuleId = 0;
+    fetchRulesPage();
 });
 
+document.getElementById('load-more-rules').addEventListener('click', fetchRulesPage);
+
 // Evaluate Rule
 document.getElementById('evaluate-rule').addEventListener('click', function() {
     var id = document.getElementById('evaluateId').value;